@@ -0,0 +1,244 @@
+package pt.ist.dbUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of connections created by another {@link ConnectionProvider}.
+ * 
+ * Idle connections are kept in LIFO order, so that the most recently used connection is handed out first and connections
+ * that are no longer needed age at the tail of the queue, where they are evicted once they exceed the idle timeout. There is
+ * no housekeeping thread: expired connections are evicted whenever a connection is acquired or released.
+ */
+public class ConnectionPool implements ConnectionProvider {
+
+    private final String name;
+
+    private final ConnectionProvider connectionFactory;
+
+    private final ConnectionPoolConfig config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition connectionReleased = lock.newCondition();
+
+    private final Deque<DbConnection> idleConnections = new ArrayDeque<DbConnection>();
+
+    private int size = 0;
+
+    private boolean shutdown = false;
+
+    public ConnectionPool(final ConnectionProvider connectionFactory, final ConnectionPoolConfig config) {
+        this("pool", connectionFactory, config);
+    }
+
+    public ConnectionPool(final String name, final ConnectionProvider connectionFactory, final ConnectionPoolConfig config) {
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.config = config;
+    }
+
+    @Override
+    public DbConnection acquire() throws SQLException {
+        final long deadline = System.currentTimeMillis() + config.getMaxWait();
+        while (true) {
+            DbConnection dbConnection = null;
+            final List<DbConnection> expired;
+            lock.lock();
+            try {
+                expired = evictIdleConnections();
+                final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+                final long waitStart = metrics.isEnabled() ? System.nanoTime() : 0;
+                boolean waited = false;
+                try {
+                    while (true) {
+                        if (shutdown) {
+                            throw new SQLException("error.connection.pool.shutdown");
+                        }
+                        dbConnection = idleConnections.pollFirst();
+                        if (dbConnection != null || size < config.getMaxSize()) {
+                            break;
+                        }
+                        final long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SQLException("error.connection.pool.exhausted");
+                        }
+                        waited = true;
+                        try {
+                            connectionReleased.await(remaining, TimeUnit.MILLISECONDS);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("error.connection.pool.interrupted", e);
+                        }
+                    }
+                } finally {
+                    // one sample for the whole wait, however many times the pool signalled a released connection
+                    if (waited && waitStart != 0) {
+                        metrics.record(DbMetricPhase.POOL_WAIT, name, System.nanoTime() - waitStart, -1);
+                    }
+                }
+                if (dbConnection == null) {
+                    size++;
+                }
+            } finally {
+                lock.unlock();
+            }
+            closeAll(expired);
+
+            if (dbConnection == null) {
+                return openConnection();
+            }
+            if (isUsable(dbConnection)) {
+                dbConnection.touch();
+                return dbConnection;
+            }
+            discard(dbConnection);
+        }
+    }
+
+    private DbConnection openConnection() throws SQLException {
+        boolean successful = false;
+        try {
+            final DbConnection dbConnection = connectionFactory.acquire();
+            successful = true;
+            return dbConnection;
+        } finally {
+            if (!successful) {
+                lock.lock();
+                try {
+                    size--;
+                    connectionReleased.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean isUsable(final DbConnection dbConnection) {
+        final long now = System.currentTimeMillis();
+        if (now - dbConnection.getCreationTime() >= config.getMaxLifetime()) {
+            return false;
+        }
+        if (now - dbConnection.getLastUsedTime() >= config.getValidationInterval()) {
+            try {
+                return dbConnection.getConnection().isValid(config.getValidationTimeout());
+            } catch (final SQLException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void release(final DbConnection dbConnection) {
+        if (System.currentTimeMillis() - dbConnection.getCreationTime() >= config.getMaxLifetime()) {
+            discard(dbConnection);
+            return;
+        }
+        dbConnection.touch();
+        final List<DbConnection> expired;
+        lock.lock();
+        try {
+            if (shutdown) {
+                size--;
+                expired = new ArrayList<DbConnection>(1);
+                expired.add(dbConnection);
+            } else {
+                idleConnections.addFirst(dbConnection);
+                expired = evictIdleConnections();
+                connectionReleased.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeAll(expired);
+    }
+
+    @Override
+    public void discard(final DbConnection dbConnection) {
+        lock.lock();
+        try {
+            size--;
+            connectionReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+        dbConnection.close();
+    }
+
+    @Override
+    public void shutdown() {
+        final List<DbConnection> idle;
+        lock.lock();
+        try {
+            shutdown = true;
+            idle = new ArrayList<DbConnection>(idleConnections);
+            size -= idle.size();
+            idleConnections.clear();
+            connectionReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(idle);
+        connectionFactory.shutdown();
+    }
+
+    /**
+     * Must be called while holding the lock. The evicted connections are returned so that they can be closed after the lock
+     * is released.
+     */
+    private List<DbConnection> evictIdleConnections() {
+        List<DbConnection> expired = null;
+        final long now = System.currentTimeMillis();
+        DbConnection oldest;
+        while ((oldest = idleConnections.peekLast()) != null
+                && (now - oldest.getLastUsedTime() >= config.getIdleTimeout() || now - oldest.getCreationTime() >= config
+                        .getMaxLifetime())) {
+            idleConnections.pollLast();
+            size--;
+            if (expired == null) {
+                expired = new ArrayList<DbConnection>();
+            }
+            expired.add(oldest);
+        }
+        return expired;
+    }
+
+    private static void closeAll(final List<DbConnection> dbConnections) {
+        if (dbConnections != null) {
+            for (final DbConnection dbConnection : dbConnections) {
+                dbConnection.close();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
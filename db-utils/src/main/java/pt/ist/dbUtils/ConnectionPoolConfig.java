@@ -0,0 +1,113 @@
+package pt.ist.dbUtils;
+
+import pt.ist.bennu.core._development.PropertiesManager;
+
+/**
+ * Sizing and eviction settings of a {@link ConnectionPool}. The values are read from the configuration properties that share
+ * the transaction's property prefix, e.g. <code>&lt;prefix&gt;.pool.maxSize</code>; any property that is not defined keeps
+ * its default value. All durations are in milliseconds.
+ */
+public class ConnectionPoolConfig {
+
+    private int maxSize = 8;
+
+    private long maxWait = 30000;
+
+    private long idleTimeout = 10 * 60 * 1000;
+
+    private long maxLifetime = 30 * 60 * 1000;
+
+    private long validationInterval = 30000;
+
+    private int validationTimeout = 5;
+
+    public static ConnectionPoolConfig fromProperties(final String dbPropertyPrefix) {
+        final ConnectionPoolConfig config = new ConnectionPoolConfig();
+        final String prefix = dbPropertyPrefix + ".pool.";
+        config.setMaxSize(getIntProperty(prefix + "maxSize", config.getMaxSize()));
+        config.setMaxWait(getLongProperty(prefix + "maxWait", config.getMaxWait()));
+        config.setIdleTimeout(getLongProperty(prefix + "idleTimeout", config.getIdleTimeout()));
+        config.setMaxLifetime(getLongProperty(prefix + "maxLifetime", config.getMaxLifetime()));
+        config.setValidationInterval(getLongProperty(prefix + "validationInterval", config.getValidationInterval()));
+        config.setValidationTimeout(getIntProperty(prefix + "validationTimeout", config.getValidationTimeout()));
+        return config;
+    }
+
+    static int getIntProperty(final String key, final int defaultValue) {
+        final String value = PropertiesManager.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static long getLongProperty(final String key, final long defaultValue) {
+        final String value = PropertiesManager.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Maximum number of connections, idle or in use. A value of zero disables pooling altogether.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * How long {@link ConnectionPool#acquire()} waits for a connection to be released when the pool is exhausted.
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(final long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * How long a connection may stay idle in the pool before it is closed.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(final long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * How long a physical connection may be used, counting from the moment it was opened.
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(final long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Connections that were idle for longer than this are validated with {@link java.sql.Connection#isValid(int)} before
+     * being handed out.
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(final long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Timeout, in seconds, of the validation round trip.
+     */
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public void setValidationTimeout(final int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+}
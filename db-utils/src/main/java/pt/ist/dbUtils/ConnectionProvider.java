@@ -0,0 +1,20 @@
+package pt.ist.dbUtils;
+
+import java.sql.SQLException;
+
+/**
+ * Source of the JDBC connections used by a {@link DbTransaction}. A connection obtained through {@link #acquire()} must be
+ * handed back exactly once, either through {@link #release(DbConnection)} when it may be reused or through
+ * {@link #discard(DbConnection)} when its state can no longer be trusted.
+ */
+public interface ConnectionProvider {
+
+    public DbConnection acquire() throws SQLException;
+
+    public void release(final DbConnection dbConnection);
+
+    public void discard(final DbConnection dbConnection);
+
+    public void shutdown();
+
+}
@@ -0,0 +1,56 @@
+package pt.ist.dbUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the connection providers in use, one per database property prefix. Unless a provider was explicitly
+ * registered for a prefix, a {@link ConnectionPool} configured from the <code>&lt;prefix&gt;.pool.*</code> properties is
+ * created the first time a transaction with that prefix opens a connection. Each connection keeps up to
+ * <code>&lt;prefix&gt;.statementCacheSize</code> idle statements in its {@link StatementCache}.
+ */
+public class ConnectionProviders {
+
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final Map<String, ConnectionProvider> providers = new HashMap<String, ConnectionProvider>();
+
+    private ConnectionProviders() {
+    }
+
+    public static synchronized ConnectionProvider getProvider(final DbTransaction dbTransaction) {
+        final String dbPropertyPrefix = dbTransaction.getDbPropertyPrefix();
+        ConnectionProvider provider = providers.get(dbPropertyPrefix);
+        if (provider == null) {
+            provider =
+                    createProvider(dbPropertyPrefix, dbTransaction.getDriverClassName(), dbTransaction.getDatabaseUrl());
+            providers.put(dbPropertyPrefix, provider);
+        }
+        return provider;
+    }
+
+    private static ConnectionProvider createProvider(final String dbPropertyPrefix, final String driverClassName,
+            final String databaseUrl) {
+        final int statementCacheSize =
+                ConnectionPoolConfig.getIntProperty(dbPropertyPrefix + ".statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE);
+        final ConnectionProvider connectionFactory =
+                new DriverManagerConnectionProvider(driverClassName, databaseUrl, statementCacheSize);
+        final ConnectionPoolConfig config = ConnectionPoolConfig.fromProperties(dbPropertyPrefix);
+        return config.getMaxSize() > 0 ? new ConnectionPool(dbPropertyPrefix, connectionFactory, config) : connectionFactory;
+    }
+
+    public static synchronized void register(final String dbPropertyPrefix, final ConnectionProvider provider) {
+        final ConnectionProvider previous = providers.put(dbPropertyPrefix, provider);
+        if (previous != null && previous != provider) {
+            previous.shutdown();
+        }
+    }
+
+    public static synchronized void shutdown() {
+        for (final ConnectionProvider provider : providers.values()) {
+            provider.shutdown();
+        }
+        providers.clear();
+    }
+
+}
@@ -0,0 +1,59 @@
+package pt.ist.dbUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical JDBC connection together with the bookkeeping needed to decide whether it can still be reused.
+ */
+public class DbConnection {
+
+    private final Connection connection;
+
+    private final StatementCache statementCache;
+
+    private final long creationTime;
+
+    private long lastUsedTime;
+
+    public DbConnection(final Connection connection) {
+        this(connection, 0);
+    }
+
+    public DbConnection(final Connection connection, final int statementCacheSize) {
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection, statementCacheSize);
+        this.creationTime = System.currentTimeMillis();
+        this.lastUsedTime = creationTime;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    void touch() {
+        lastUsedTime = System.currentTimeMillis();
+    }
+
+    void close() {
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package pt.ist.dbUtils;
+
+public enum DbMetricPhase {
+
+    /**
+     * Obtaining a connection from the provider, keyed by property prefix.
+     */
+    OPEN,
+
+    /**
+     * Time spent blocked on an exhausted pool, keyed by pool name.
+     */
+    POOL_WAIT,
+
+    /**
+     * Obtaining a statement, from the statement cache or from the database, keyed by query string.
+     */
+    PREPARE,
+
+    /**
+     * Executing a statement or a batch, keyed by query string.
+     */
+    EXECUTE,
+
+    /**
+     * Running processResultSet, which includes the round trips to fetch rows, keyed by query string.
+     */
+    FETCH,
+
+    COMMIT,
+
+    ROLLBACK;
+
+}
@@ -0,0 +1,21 @@
+package pt.ist.dbUtils;
+
+/**
+ * Receives the timings measured by {@link DbTransaction} and {@link ConnectionPool}. Implementations are installed with
+ * {@link DbMetricsRegistry#setMetrics(DbMetrics)} and must be thread safe.
+ * 
+ * When {@link #isEnabled()} returns false nothing is measured at all, so the cost of disabled metrics is one volatile read
+ * and one boolean test per operation.
+ */
+public interface DbMetrics {
+
+    public boolean isEnabled();
+
+    /**
+     * @param key the property prefix, pool name or query string the phase refers to, as documented in {@link DbMetricPhase}
+     * @param nanos elapsed time
+     * @param rows rows read or written, or -1 when unknown
+     */
+    public void record(final DbMetricPhase phase, final String key, final long nanos, final long rows);
+
+}
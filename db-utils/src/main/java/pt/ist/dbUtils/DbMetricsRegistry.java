@@ -0,0 +1,34 @@
+package pt.ist.dbUtils;
+
+public class DbMetricsRegistry {
+
+    private static final DbMetrics DISABLED = new DbMetrics() {
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(final DbMetricPhase phase, final String key, final long nanos, final long rows) {
+        }
+
+    };
+
+    private static volatile DbMetrics metrics = DISABLED;
+
+    private DbMetricsRegistry() {
+    }
+
+    public static DbMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Installs the metrics sink; <code>null</code> disables metrics.
+     */
+    public static void setMetrics(final DbMetrics dbMetrics) {
+        metrics = dbMetrics == null ? DISABLED : dbMetrics;
+    }
+
+}
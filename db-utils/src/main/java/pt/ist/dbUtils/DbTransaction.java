@@ -1,19 +1,37 @@
 package pt.ist.dbUtils;
 
+import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 
 import pt.ist.bennu.core._development.PropertiesManager;
 
 public abstract class DbTransaction {
 
+    private ConnectionProvider connectionProvider = null;
+
+    private DbConnection dbConnection = null;
+
     private Connection connection = null;
 
+    private int defaultFetchSize = -1;
+
+    public static final String ORACLE_DRIVER_CLASS_NAME = "oracle.jdbc.driver.OracleDriver";
+
+    /**
+     * The JDBC URL given by <code>&lt;prefix&gt;.url</code> or, when that property is not defined, an Oracle thin URL built
+     * from <code>&lt;prefix&gt;.user</code>, <code>&lt;prefix&gt;.pass</code> and <code>&lt;prefix&gt;.alias</code>.
+     */
     protected String getDatabaseUrl() {
+        final String url = PropertiesManager.getProperty(getDbPropertyPrefix() + ".url");
+        if (url != null && !url.trim().isEmpty()) {
+            return url.trim();
+        }
         StringBuilder stringBuffer = new StringBuilder();
         stringBuffer.append("jdbc:oracle:thin:");
         stringBuffer.append(PropertiesManager.getProperty(getDbPropertyPrefix() + ".user"));
@@ -24,8 +42,27 @@ public abstract class DbTransaction {
         return stringBuffer.toString();
     }
 
+    /**
+     * The JDBC driver class given by <code>&lt;prefix&gt;.driver</code>, Oracle's by default.
+     */
+    protected String getDriverClassName() {
+        final String driver = PropertiesManager.getProperty(getDbPropertyPrefix() + ".driver");
+        return driver == null || driver.trim().isEmpty() ? ORACLE_DRIVER_CLASS_NAME : driver.trim();
+    }
+
     protected abstract String getDbPropertyPrefix();
 
+    /**
+     * Fetch size used for queries that do not give one through {@link ExternalDbFetchHints}. Zero leaves it to the driver.
+     */
+    protected int getDefaultFetchSize() {
+        return ConnectionPoolConfig.getIntProperty(getDbPropertyPrefix() + ".fetchSize", 0);
+    }
+
+    protected ConnectionProvider getConnectionProvider() {
+        return ConnectionProviders.getProvider(this);
+    }
+
     public void executeQuery(final ExternalDbQuery externalDbQuery) throws SQLException {
         if (connection == null) {
             openConnection();
@@ -33,76 +70,201 @@ public abstract class DbTransaction {
         if (externalDbQuery instanceof ExternalDbCall) {
             final ExternalDbCall externalDbCall = (ExternalDbCall) externalDbQuery;
             executeCall(externalDbCall);
+        } else if (externalDbQuery instanceof ExternalDbBatch) {
+            executeBatch((ExternalDbBatch) externalDbQuery);
         } else {
             executeStatement(externalDbQuery);
         }
     }
 
     private void executeStatement(final ExternalDbQuery externalDbQuery) throws SQLException {
+        final StatementCache statementCache = dbConnection.getStatementCache();
+        final String queryString = externalDbQuery.getQueryString();
+        final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+        final boolean timed = metrics.isEnabled() && queryString != null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
+        boolean successful = false;
         try {
-            final String queryString = externalDbQuery.getQueryString();
             if (queryString != null) {
-                preparedStatement = connection.prepareStatement(queryString);
+                long start = timed ? System.nanoTime() : 0;
+                preparedStatement = statementCache.prepareStatement(queryString);
+                applyFetchHints(preparedStatement, externalDbQuery);
+                start = record(timed, metrics, DbMetricPhase.PREPARE, queryString, start, -1);
                 resultSet = preparedStatement.executeQuery();
+                record(timed, metrics, DbMetricPhase.EXECUTE, queryString, start, -1);
             }
+            final long start = timed ? System.nanoTime() : 0;
             externalDbQuery.processResultSet(resultSet);
+            record(timed, metrics, DbMetricPhase.FETCH, queryString, start, getRowCount(externalDbQuery));
+            successful = true;
         } finally {
-            if (resultSet != null) {
-                try {
-                    resultSet.close();
-                } catch (final SQLException e) {
-                    e.printStackTrace();
-                }
-            }
+            closeResultSet(resultSet);
             if (preparedStatement != null) {
-                try {
-                    preparedStatement.close();
-                } catch (final SQLException e) {
-                    e.printStackTrace();
+                if (successful) {
+                    statementCache.releaseStatement(queryString, preparedStatement);
+                } else {
+                    closeStatement(preparedStatement);
                 }
             }
         }
     }
 
     private void executeCall(final ExternalDbCall externalDbCall) throws SQLException {
+        final StatementCache statementCache = dbConnection.getStatementCache();
+        final String query = externalDbCall.getQueryString();
+        final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+        final boolean timed = metrics.isEnabled() && query != null;
         CallableStatement callableStatement = null;
         ResultSet resultSet = null;
+        boolean successful = false;
         try {
-            final String query = externalDbCall.getQueryString();
             if (query != null) {
-                callableStatement = connection.prepareCall(query);
+                long start = timed ? System.nanoTime() : 0;
+                callableStatement = statementCache.prepareCall(query);
+                applyFetchHints(callableStatement, externalDbCall);
                 externalDbCall.prepareCall(callableStatement);
+                start = record(timed, metrics, DbMetricPhase.PREPARE, query, start, -1);
                 resultSet = callableStatement.executeQuery();
+                record(timed, metrics, DbMetricPhase.EXECUTE, query, start, -1);
             }
+            final long start = timed ? System.nanoTime() : 0;
             externalDbCall.processResultSet(resultSet, callableStatement);
+            record(timed, metrics, DbMetricPhase.FETCH, query, start, getRowCount(externalDbCall));
+            successful = true;
         } finally {
-            if (resultSet != null) {
-                try {
-                    resultSet.close();
-                } catch (final SQLException e) {
-                    e.printStackTrace();
+            closeResultSet(resultSet);
+            if (callableStatement != null) {
+                if (successful) {
+                    statementCache.releaseCall(query, callableStatement);
+                } else {
+                    closeStatement(callableStatement);
                 }
             }
-            if (callableStatement != null) {
+        }
+    }
+
+    /**
+     * Statements are reused across queries, so both settings are always assigned, even when they are left at their defaults.
+     */
+    private void applyFetchHints(final Statement statement, final ExternalDbQuery externalDbQuery) throws SQLException {
+        int fetchSize = 0;
+        int maxRows = 0;
+        if (externalDbQuery instanceof ExternalDbFetchHints) {
+            final ExternalDbFetchHints fetchHints = (ExternalDbFetchHints) externalDbQuery;
+            fetchSize = fetchHints.getFetchSize();
+            maxRows = fetchHints.getMaxRows();
+        }
+        if (fetchSize <= 0) {
+            if (defaultFetchSize < 0) {
+                defaultFetchSize = Math.max(getDefaultFetchSize(), 0);
+            }
+            fetchSize = defaultFetchSize;
+        }
+        statement.setFetchSize(fetchSize);
+        statement.setMaxRows(maxRows > 0 ? maxRows : 0);
+    }
+
+    private void executeBatch(final ExternalDbBatch externalDbBatch) throws SQLException {
+        final StatementCache statementCache = dbConnection.getStatementCache();
+        final String queryString = externalDbBatch.getQueryString();
+        final List<Object[]> parameterSets = externalDbBatch.getParameterSets();
+        if (queryString == null || parameterSets.isEmpty()) {
+            return;
+        }
+        final int batchSize = externalDbBatch.getBatchSize();
+        final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+        final boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        final PreparedStatement preparedStatement = statementCache.prepareStatement(queryString);
+        start = record(timed, metrics, DbMetricPhase.PREPARE, queryString, start, -1);
+        boolean successful = false;
+        try {
+            int first = 0;
+            while (first < parameterSets.size()) {
+                final int last = Math.min(first + batchSize, parameterSets.size());
+                for (int row = first; row < last; row++) {
+                    externalDbBatch.setParameters(preparedStatement, parameterSets.get(row));
+                    preparedStatement.addBatch();
+                }
+                final int[] updateCounts;
                 try {
-                    callableStatement.close();
-                } catch (final SQLException e) {
-                    e.printStackTrace();
+                    updateCounts = preparedStatement.executeBatch();
+                } catch (final BatchUpdateException e) {
+                    reportUpdateCounts(externalDbBatch, first, e.getUpdateCounts());
+                    throw e;
                 }
+                reportUpdateCounts(externalDbBatch, first, updateCounts);
+                first = last;
+            }
+            record(timed, metrics, DbMetricPhase.EXECUTE, queryString, start, parameterSets.size());
+            successful = true;
+        } finally {
+            if (successful) {
+                statementCache.releaseStatement(queryString, preparedStatement);
+            } else {
+                closeStatement(preparedStatement);
+            }
+        }
+    }
+
+    private static void reportUpdateCounts(final ExternalDbBatch externalDbBatch, final int first, final int[] updateCounts)
+            throws SQLException {
+        if (updateCounts != null) {
+            for (int i = 0; i < updateCounts.length; i++) {
+                externalDbBatch.processUpdateCount(first + i, updateCounts[i]);
+            }
+        }
+    }
+
+    private static long getRowCount(final ExternalDbQuery externalDbQuery) {
+        return externalDbQuery instanceof ExternalDbRowQuery ? ((ExternalDbRowQuery) externalDbQuery).getRowCount() : -1;
+    }
+
+    /**
+     * Records the time elapsed since <code>start</code> and returns the current time, so that consecutive phases can be
+     * chained.
+     */
+    private static long record(final boolean timed, final DbMetrics metrics, final DbMetricPhase phase, final String key,
+            final long start, final long rows) {
+        if (!timed) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        metrics.record(phase, key, now - start, rows);
+        return now;
+    }
+
+    private static void closeResultSet(final ResultSet resultSet) {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (final SQLException e) {
+                e.printStackTrace();
             }
         }
     }
 
+    private static void closeStatement(final Statement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     protected void openConnection() {
         if (connection != null) {
             throw new Error("error.connection.already.open");
         }
+        final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+        final boolean timed = metrics.isEnabled();
+        final long start = timed ? System.nanoTime() : 0;
         try {
-            DriverManager.registerDriver(new oracle.jdbc.driver.OracleDriver());
-            connection = DriverManager.getConnection(getDatabaseUrl());
-            connection.setAutoCommit(false);
+            connectionProvider = getConnectionProvider();
+            dbConnection = connectionProvider.acquire();
+            connection = dbConnection.getConnection();
+            record(timed, metrics, DbMetricPhase.OPEN, getDbPropertyPrefix(), start, -1);
         } catch (final SQLException e) {
             throw new Error(e);
         }
@@ -110,36 +272,89 @@ public abstract class DbTransaction {
 
     protected void closeConnection() {
         if (connection != null) {
+            // Work left pending must not leak into the next transaction that picks up this connection.
+            boolean successful = false;
             try {
-                connection.close();
+                connection.rollback();
+                successful = true;
             } catch (final SQLException e) {
-                throw new Error(e);
+                e.printStackTrace();
             } finally {
+                closeConnection(successful);
+            }
+        }
+    }
+
+    private void closeConnection(final boolean reusable) {
+        if (connection != null) {
+            try {
+                if (reusable) {
+                    connectionProvider.release(dbConnection);
+                } else {
+                    connectionProvider.discard(dbConnection);
+                }
+            } finally {
+                connectionProvider = null;
+                dbConnection = null;
                 connection = null;
             }
         }
     }
 
     public void commit() {
+        try {
+            commitTransaction();
+        } catch (final SQLException e) {
+            throw new Error(e);
+        }
+    }
+
+    void commitTransaction() throws SQLException {
         if (connection != null) {
+            final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+            final boolean timed = metrics.isEnabled();
+            final long start = timed ? System.nanoTime() : 0;
+            boolean successful = false;
             try {
                 connection.commit();
-            } catch (final SQLException e) {
-                throw new Error(e);
+                record(timed, metrics, DbMetricPhase.COMMIT, getDbPropertyPrefix(), start, -1);
+                successful = true;
             } finally {
-                closeConnection();
+                closeConnection(successful);
             }
         }
     }
 
     public void abort() {
         if (connection != null) {
+            final DbMetrics metrics = DbMetricsRegistry.getMetrics();
+            final boolean timed = metrics.isEnabled();
+            final long start = timed ? System.nanoTime() : 0;
+            boolean successful = false;
             try {
                 connection.rollback();
+                record(timed, metrics, DbMetricPhase.ROLLBACK, getDbPropertyPrefix(), start, -1);
+                successful = true;
             } catch (final SQLException e) {
                 throw new Error(e);
             } finally {
-                closeConnection();
+                closeConnection(successful);
+            }
+        }
+    }
+
+    /**
+     * Rolls back and throws the connection away instead of returning it to its provider, so that the next connection opened
+     * by this transaction is a fresh one.
+     */
+    void discardConnection() {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (final SQLException e) {
+                // the connection is being discarded precisely because it may be broken
+            } finally {
+                closeConnection(false);
             }
         }
     }
@@ -0,0 +1,72 @@
+package pt.ist.dbUtils;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Opens a new connection on every {@link #acquire()} and closes it on release. This is what every transaction did before
+ * connection pooling was introduced, and it is still used when a pool is disabled for a given property prefix.
+ */
+public class DriverManagerConnectionProvider implements ConnectionProvider {
+
+    private static final Set<String> registeredDrivers = new HashSet<String>();
+
+    private final String driverClassName;
+
+    private final String databaseUrl;
+
+    private final int statementCacheSize;
+
+    public DriverManagerConnectionProvider(final String databaseUrl) {
+        this(DbTransaction.ORACLE_DRIVER_CLASS_NAME, databaseUrl, 0);
+    }
+
+    public DriverManagerConnectionProvider(final String driverClassName, final String databaseUrl,
+            final int statementCacheSize) {
+        this.driverClassName = driverClassName;
+        this.databaseUrl = databaseUrl;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    private static synchronized void registerDriver(final String driverClassName) throws SQLException {
+        if (!registeredDrivers.contains(driverClassName)) {
+            try {
+                DriverManager.registerDriver((Driver) Class.forName(driverClassName).newInstance());
+            } catch (final ClassNotFoundException e) {
+                throw new SQLException("error.jdbc.driver.not.found: " + driverClassName, e);
+            } catch (final InstantiationException e) {
+                throw new SQLException("error.jdbc.driver.not.instantiable: " + driverClassName, e);
+            } catch (final IllegalAccessException e) {
+                throw new SQLException("error.jdbc.driver.not.instantiable: " + driverClassName, e);
+            }
+            registeredDrivers.add(driverClassName);
+        }
+    }
+
+    @Override
+    public DbConnection acquire() throws SQLException {
+        registerDriver(driverClassName);
+        final Connection connection = DriverManager.getConnection(databaseUrl);
+        connection.setAutoCommit(false);
+        return new DbConnection(connection, statementCacheSize);
+    }
+
+    @Override
+    public void release(final DbConnection dbConnection) {
+        dbConnection.close();
+    }
+
+    @Override
+    public void discard(final DbConnection dbConnection) {
+        dbConnection.close();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+}
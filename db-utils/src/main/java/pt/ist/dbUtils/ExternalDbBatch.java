@@ -0,0 +1,67 @@
+package pt.ist.dbUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DML statement executed once for each of the accumulated parameter sets. When passed to
+ * {@link DbTransaction#executeQuery(ExternalDbQuery)} the parameter sets are sent to the database with
+ * {@link PreparedStatement#addBatch()} / {@link PreparedStatement#executeBatch()}, <code>batchSize</code> rows per round
+ * trip, and the outcome of each row is reported through {@link #processUpdateCount(int, int)}.
+ */
+public abstract class ExternalDbBatch implements ExternalDbQuery {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final List<Object[]> parameterSets = new ArrayList<Object[]>();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public void addParameters(final Object... parameters) {
+        parameterSets.add(parameters);
+    }
+
+    public List<Object[]> getParameterSets() {
+        return parameterSets;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("error.batch.size.must.be.positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Binds one parameter set to the statement. Parameters are bound positionally with
+     * {@link PreparedStatement#setObject(int, Object)}; override to use typed setters or to bind nulls of a specific SQL type.
+     */
+    public void setParameters(final PreparedStatement preparedStatement, final Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            preparedStatement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    /**
+     * Reports the outcome of the parameter set at <code>row</code>, as returned by the driver: a row count,
+     * {@link Statement#SUCCESS_NO_INFO} or {@link Statement#EXECUTE_FAILED}.
+     */
+    public void processUpdateCount(final int row, final int updateCount) throws SQLException {
+    }
+
+    /**
+     * Batches produce no result set.
+     */
+    @Override
+    public final void processResultSet(final ResultSet resultSet) throws SQLException {
+    }
+
+}
@@ -0,0 +1,19 @@
+package pt.ist.dbUtils;
+
+/**
+ * Optionally implemented by an {@link ExternalDbQuery} or {@link ExternalDbCall} to control how its result set is fetched.
+ * A value of zero leaves the corresponding setting to the transaction default.
+ */
+public interface ExternalDbFetchHints {
+
+    /**
+     * Number of rows the driver brings over the network per round trip.
+     */
+    public int getFetchSize();
+
+    /**
+     * Upper bound on the number of rows the result set will contain.
+     */
+    public int getMaxRows();
+
+}
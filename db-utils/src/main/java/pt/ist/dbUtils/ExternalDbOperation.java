@@ -10,17 +10,51 @@ public abstract class ExternalDbOperation extends DbTransaction {
         throw new Error(e);
     }
 
+    /**
+     * Only idempotent operations are retried, since a failure may have happened after the database applied the work.
+     */
+    protected boolean isIdempotent() {
+        return false;
+    }
+
+    protected RetryPolicy getRetryPolicy() {
+        return RetryPolicy.fromProperties(getDbPropertyPrefix());
+    }
+
     public void execute() {
-        boolean successful = false;
-        try {
-            doOperation();
-            commit();
-            successful = true;
-        } catch (final SQLException e) {
-            handleSQLException(e);
-        } finally {
-            if (!successful) {
-                abort();
+        final RetryPolicy retryPolicy = isIdempotent() ? getRetryPolicy() : RetryPolicy.NONE;
+        for (int attempt = 1;; attempt++) {
+            boolean successful = false;
+            boolean retry = false;
+            try {
+                doOperation();
+                commitTransaction();
+                successful = true;
+            } catch (final SQLException e) {
+                retry = retryPolicy.shouldRetry(e, attempt);
+                if (!retry) {
+                    handleSQLException(e);
+                }
+            } catch (final Error e) {
+                retry = e.getCause() instanceof SQLException && retryPolicy.shouldRetry((SQLException) e.getCause(), attempt);
+                if (!retry) {
+                    throw e;
+                }
+            } finally {
+                if (retry) {
+                    discardConnection();
+                } else if (!successful) {
+                    abort();
+                }
+            }
+            if (!retry) {
+                return;
+            }
+            try {
+                Thread.sleep(retryPolicy.getBackoff(attempt));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Error("error.retry.interrupted", e);
             }
         }
     }
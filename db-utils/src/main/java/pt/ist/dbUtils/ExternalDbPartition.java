@@ -0,0 +1,13 @@
+package pt.ist.dbUtils;
+
+import java.sql.SQLException;
+
+/**
+ * An independent slice of work, typically a disjoint key range, that {@link ExternalDbPartitionExecutor} runs in a
+ * transaction of its own.
+ */
+public interface ExternalDbPartition<T> {
+
+    public T doOperation(final DbTransaction dbTransaction) throws SQLException;
+
+}
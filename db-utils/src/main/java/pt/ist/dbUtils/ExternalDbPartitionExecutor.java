@@ -0,0 +1,155 @@
+package pt.ist.dbUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of partitions on at most <code>parallelism</code> worker threads, each partition in its own
+ * {@link ExternalDbOperation}: a partition commits when it completes and aborts when it fails, independently of the others.
+ * 
+ * Every worker holds one connection while it runs, so the parallelism should not exceed the size of the connection pool of
+ * the property prefix.
+ */
+public class ExternalDbPartitionExecutor {
+
+    private static final AtomicInteger executorCounter = new AtomicInteger();
+
+    private final String dbPropertyPrefix;
+
+    private final int parallelism;
+
+    private boolean stopOnFailure = false;
+
+    public ExternalDbPartitionExecutor(final String dbPropertyPrefix, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("error.parallelism.must.be.positive");
+        }
+        this.dbPropertyPrefix = dbPropertyPrefix;
+        this.parallelism = parallelism;
+    }
+
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    /**
+     * When set, partitions that have not started yet are skipped as soon as one partition fails.
+     */
+    public void setStopOnFailure(final boolean stopOnFailure) {
+        this.stopOnFailure = stopOnFailure;
+    }
+
+    /**
+     * Called on the worker thread before and after each partition, with the transaction the partition runs in.
+     */
+    protected void beforePartition(final DbTransaction dbTransaction) {
+    }
+
+    protected void afterPartition(final DbTransaction dbTransaction) {
+    }
+
+    /**
+     * Runs all the partitions and waits for them to finish. The results are returned in the order of the partitions.
+     */
+    public <T> List<ExternalDbPartitionResult<T>> execute(final List<? extends ExternalDbPartition<T>> partitions) {
+        final List<ExternalDbPartitionResult<T>> results = new ArrayList<ExternalDbPartitionResult<T>>(partitions.size());
+        if (partitions.isEmpty()) {
+            return results;
+        }
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(parallelism, partitions.size()), new PartitionThreadFactory());
+        try {
+            final List<Future<ExternalDbPartitionResult<T>>> futures =
+                    new ArrayList<Future<ExternalDbPartitionResult<T>>>(partitions.size());
+            for (final ExternalDbPartition<T> partition : partitions) {
+                futures.add(executor.submit(new PartitionTask<T>(partition, failed)));
+            }
+            for (final Future<ExternalDbPartitionResult<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Error("error.partitioned.execution.interrupted", e);
+        } catch (final ExecutionException e) {
+            throw new Error(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private class PartitionTask<T> implements Callable<ExternalDbPartitionResult<T>> {
+
+        private final ExternalDbPartition<T> partition;
+
+        private final AtomicBoolean failed;
+
+        private T value = null;
+
+        private PartitionTask(final ExternalDbPartition<T> partition, final AtomicBoolean failed) {
+            this.partition = partition;
+            this.failed = failed;
+        }
+
+        @Override
+        public ExternalDbPartitionResult<T> call() {
+            if (stopOnFailure && failed.get()) {
+                return new ExternalDbPartitionResult<T>(partition, null, null, false, 0);
+            }
+            final long start = System.currentTimeMillis();
+            final ExternalDbOperation operation = new ExternalDbOperation() {
+
+                @Override
+                protected void doOperation() throws SQLException {
+                    value = partition.doOperation(this);
+                }
+
+                @Override
+                protected String getDbPropertyPrefix() {
+                    return dbPropertyPrefix;
+                }
+
+            };
+            Throwable failure = null;
+            beforePartition(operation);
+            try {
+                operation.execute();
+            } catch (final Throwable t) {
+                failure = t;
+                failed.set(true);
+            } finally {
+                afterPartition(operation);
+            }
+            return new ExternalDbPartitionResult<T>(partition, failure == null ? value : null, failure, true,
+                    System.currentTimeMillis() - start);
+        }
+
+    }
+
+    private class PartitionThreadFactory implements ThreadFactory {
+
+        private final int executorNumber = executorCounter.incrementAndGet();
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread =
+                    new Thread(runnable, "external-db-partition-" + executorNumber + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package pt.ist.dbUtils;
+
+public class ExternalDbPartitionResult<T> {
+
+    private final ExternalDbPartition<T> partition;
+
+    private final T value;
+
+    private final Throwable failure;
+
+    private final boolean executed;
+
+    private final long elapsedTime;
+
+    ExternalDbPartitionResult(final ExternalDbPartition<T> partition, final T value, final Throwable failure,
+            final boolean executed, final long elapsedTime) {
+        this.partition = partition;
+        this.value = value;
+        this.failure = failure;
+        this.executed = executed;
+        this.elapsedTime = elapsedTime;
+    }
+
+    public ExternalDbPartition<T> getPartition() {
+        return partition;
+    }
+
+    /**
+     * The value returned by the partition, available when its transaction committed.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * False when the partition was skipped because another one had already failed.
+     */
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public boolean isSuccessful() {
+        return executed && failure == null;
+    }
+
+    /**
+     * Wall-clock time of the partition, in milliseconds, including commit or abort.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+}
@@ -0,0 +1,69 @@
+package pt.ist.dbUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Query whose result set is consumed one row at a time. Rows are fetched from the database in blocks of
+ * <code>fetchSize</code> as {@link #processRow(ResultSet)} asks for them, so reads of any size run in bounded memory as long as
+ * the implementation does not itself accumulate the rows.
+ */
+public abstract class ExternalDbRowQuery implements ExternalDbQuery, ExternalDbFetchHints {
+
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int maxRows = 0;
+
+    private long rowCount = 0;
+
+    private boolean stopped = false;
+
+    /**
+     * Called with the result set positioned on each row, in order.
+     */
+    protected abstract void processRow(final ResultSet resultSet) throws SQLException;
+
+    @Override
+    public final void processResultSet(final ResultSet resultSet) throws SQLException {
+        rowCount = 0;
+        stopped = false;
+        if (resultSet != null) {
+            while (!stopped && resultSet.next()) {
+                rowCount++;
+                processRow(resultSet);
+            }
+        }
+    }
+
+    /**
+     * Stops reading the result set after the current row.
+     */
+    protected void stop() {
+        stopped = true;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(final int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(final int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+}
@@ -0,0 +1,203 @@
+package pt.ist.dbUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps a latency histogram per phase and key in memory. The histograms have one bucket per power of two nanoseconds, so
+ * recording is a handful of atomic increments and the reported percentiles are upper bounds accurate to within a factor of
+ * two.
+ * 
+ * Queries built by concatenating values instead of binding parameters produce a different query string on every execution;
+ * to keep memory bounded, keys beyond <code>maxKeys</code> are recorded under {@link #OTHER_KEY}.
+ */
+public class InMemoryDbMetrics implements DbMetrics, InMemoryDbMetricsMBean {
+
+    public static final String OTHER_KEY = "<other>";
+
+    private static final int BUCKETS = 64;
+
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+    private final int maxKeys;
+
+    private volatile boolean enabled = true;
+
+    public InMemoryDbMetrics() {
+        this(1000);
+    }
+
+    public InMemoryDbMetrics(final int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void record(final DbMetricPhase phase, final String key, final long nanos, final long rows) {
+        getHistogram(phase, key).record(nanos, rows);
+    }
+
+    private Histogram getHistogram(final DbMetricPhase phase, final String key) {
+        final String id = phase.name() + " " + key;
+        Histogram histogram = histograms.get(id);
+        if (histogram == null) {
+            if (histograms.size() >= maxKeys) {
+                return getHistogram(phase, OTHER_KEY, phase.name() + " " + OTHER_KEY);
+            }
+            histogram = getHistogram(phase, key, id);
+        }
+        return histogram;
+    }
+
+    private Histogram getHistogram(final DbMetricPhase phase, final String key, final String id) {
+        final Histogram histogram = new Histogram(phase, key);
+        final Histogram existing = histograms.putIfAbsent(id, histogram);
+        return existing == null ? histogram : existing;
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+    }
+
+    public List<Histogram> getHistograms() {
+        final List<Histogram> result = new ArrayList<Histogram>(histograms.values());
+        Collections.sort(result, new Comparator<Histogram>() {
+            @Override
+            public int compare(final Histogram h1, final Histogram h2) {
+                final int phase = h1.getPhase().compareTo(h2.getPhase());
+                return phase != 0 ? phase : h1.getKey().compareTo(h2.getKey());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * One line per phase and key, with times in microseconds.
+     */
+    @Override
+    public String dump() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("phase\tcount\ttotal\tmean\tp50\tp99\tmax\trows\tkey\n");
+        for (final Histogram histogram : getHistograms()) {
+            final long count = histogram.getCount();
+            builder.append(histogram.getPhase()).append('\t');
+            builder.append(count).append('\t');
+            builder.append(histogram.getTotal() / 1000).append('\t');
+            builder.append(count == 0 ? 0 : histogram.getTotal() / count / 1000).append('\t');
+            builder.append(histogram.getPercentile(0.5) / 1000).append('\t');
+            builder.append(histogram.getPercentile(0.99) / 1000).append('\t');
+            builder.append(histogram.getMax() / 1000).append('\t');
+            builder.append(histogram.getRows()).append('\t');
+            builder.append(histogram.getKey().replace('\n', ' ')).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public ObjectName registerMBean(final String name) {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName("pt.ist.dbUtils:type=InMemoryDbMetrics,name=" + name);
+            mBeanServer.registerMBean(this, objectName);
+            return objectName;
+        } catch (final JMException e) {
+            throw new Error(e);
+        }
+    }
+
+    public static class Histogram {
+
+        private final DbMetricPhase phase;
+
+        private final String key;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        private final AtomicLong rows = new AtomicLong();
+
+        private Histogram(final DbMetricPhase phase, final String key) {
+            this.phase = phase;
+            this.key = key;
+        }
+
+        private void record(final long nanos, final long rowCount) {
+            final long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(value | 1));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long currentMax;
+            while ((currentMax = max.get()) < value && !max.compareAndSet(currentMax, value)) {
+            }
+            if (rowCount > 0) {
+                rows.addAndGet(rowCount);
+            }
+        }
+
+        public DbMetricPhase getPhase() {
+            return phase;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotal() {
+            return total.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        /**
+         * Upper bound, in nanoseconds, of the bucket holding the given quantile.
+         */
+        public long getPercentile(final double quantile) {
+            final long threshold = (long) Math.ceil(count.get() * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,13 @@
+package pt.ist.dbUtils;
+
+public interface InMemoryDbMetricsMBean {
+
+    public boolean isEnabled();
+
+    public void setEnabled(final boolean enabled);
+
+    public String dump();
+
+    public void reset();
+
+}
@@ -0,0 +1,200 @@
+package pt.ist.dbUtils;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import pt.ist.bennu.core._development.PropertiesManager;
+
+/**
+ * Decides whether an {@link ExternalDbOperation} that failed with a {@link SQLException} is worth running again, and how long
+ * to wait before doing so.
+ * 
+ * An exception is considered transient when it is a {@link SQLTransientException} or a {@link SQLRecoverableException}, or
+ * when it, or any exception chained to it, has one of the configured SQL states (matched as prefixes, so <code>08</code>
+ * covers every connection exception) or vendor error codes. The defaults cover serialization failures, deadlocks and lost
+ * connections on Oracle.
+ * 
+ * The wait before attempt <code>n + 1</code> is <code>initialBackoff * 2^(n - 1)</code>, capped at <code>maxBackoff</code>,
+ * of which a random fraction of up to <code>jitter</code> is taken off so that concurrent tasks do not retry in lockstep.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy NONE = new RetryPolicy(1);
+
+    public static final Set<String> DEFAULT_SQL_STATES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("08",
+            "40001")));
+
+    /**
+     * ORA-00060 deadlock, ORA-08177 can't serialize access, ORA-01033/01089/01090 instance starting up or shutting down,
+     * ORA-03113/03114/03135 lost connection, ORA-12170/12541/12571 network errors, and the Oracle JDBC driver's IO exception
+     * (17002), closed connection (17008) and no more data to read from socket (17410).
+     */
+    public static final Set<Integer> DEFAULT_VENDOR_CODES = Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(60,
+            8177, 1033, 1089, 1090, 3113, 3114, 3135, 12170, 12541, 12571, 17002, 17008, 17410)));
+
+    private static final Random random = new Random();
+
+    private final int maxAttempts;
+
+    private long initialBackoff = 200;
+
+    private long maxBackoff = 30000;
+
+    private double jitter = 0.5;
+
+    private Set<String> sqlStates = DEFAULT_SQL_STATES;
+
+    private Set<Integer> vendorCodes = DEFAULT_VENDOR_CODES;
+
+    public RetryPolicy(final int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("error.max.attempts.must.be.positive");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Reads the policy from the <code>&lt;prefix&gt;.retry.*</code> properties: <code>maxAttempts</code> (default 1, i.e. no
+     * retries), <code>initialBackoff</code> and <code>maxBackoff</code> in milliseconds, <code>jitter</code>, and
+     * comma-separated <code>sqlStates</code> and <code>vendorCodes</code> that replace the defaults.
+     */
+    public static RetryPolicy fromProperties(final String dbPropertyPrefix) {
+        final String prefix = dbPropertyPrefix + ".retry.";
+        final int maxAttempts = ConnectionPoolConfig.getIntProperty(prefix + "maxAttempts", 1);
+        if (maxAttempts <= 1) {
+            return NONE;
+        }
+        final RetryPolicy retryPolicy = new RetryPolicy(maxAttempts);
+        retryPolicy.setInitialBackoff(ConnectionPoolConfig.getLongProperty(prefix + "initialBackoff",
+                retryPolicy.getInitialBackoff()));
+        retryPolicy.setMaxBackoff(ConnectionPoolConfig.getLongProperty(prefix + "maxBackoff", retryPolicy.getMaxBackoff()));
+        final String jitter = PropertiesManager.getProperty(prefix + "jitter");
+        if (jitter != null && !jitter.trim().isEmpty()) {
+            retryPolicy.setJitter(Double.parseDouble(jitter.trim()));
+        }
+        final String sqlStates = PropertiesManager.getProperty(prefix + "sqlStates");
+        if (sqlStates != null && !sqlStates.trim().isEmpty()) {
+            final Set<String> states = new HashSet<String>();
+            for (final String state : sqlStates.split(",")) {
+                states.add(state.trim());
+            }
+            retryPolicy.setSqlStates(states);
+        }
+        final String vendorCodes = PropertiesManager.getProperty(prefix + "vendorCodes");
+        if (vendorCodes != null && !vendorCodes.trim().isEmpty()) {
+            final Set<Integer> codes = new HashSet<Integer>();
+            for (final String code : vendorCodes.split(",")) {
+                codes.add(Integer.valueOf(code.trim()));
+            }
+            retryPolicy.setVendorCodes(codes);
+        }
+        return retryPolicy;
+    }
+
+    public boolean shouldRetry(final SQLException e, final int attempt) {
+        return attempt < maxAttempts && isTransient(e);
+    }
+
+    public boolean isTransient(final SQLException e) {
+        for (Throwable cause = e; cause != null; cause = next(cause)) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                final SQLException sqlException = (SQLException) cause;
+                if (vendorCodes.contains(sqlException.getErrorCode()) || matchesSqlState(sqlException.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(final Throwable throwable) {
+        if (throwable instanceof SQLException) {
+            final SQLException nextException = ((SQLException) throwable).getNextException();
+            if (nextException != null) {
+                return nextException;
+            }
+        }
+        return throwable.getCause() == throwable ? null : throwable.getCause();
+    }
+
+    private boolean matchesSqlState(final String sqlState) {
+        if (sqlState != null) {
+            for (final String state : sqlStates) {
+                if (sqlState.startsWith(state)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Time to wait, in milliseconds, after the given failed attempt.
+     */
+    public long getBackoff(final int attempt) {
+        final double exponential = initialBackoff * Math.pow(2, Math.min(attempt - 1, 30));
+        final double capped = Math.min(exponential, maxBackoff);
+        final double randomFraction;
+        synchronized (random) {
+            randomFraction = random.nextDouble();
+        }
+        return (long) (capped * (1 - jitter * randomFraction));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(final long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(final long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(final double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("error.jitter.must.be.between.zero.and.one");
+        }
+        this.jitter = jitter;
+    }
+
+    public Set<String> getSqlStates() {
+        return sqlStates;
+    }
+
+    public void setSqlStates(final Set<String> sqlStates) {
+        this.sqlStates = sqlStates;
+    }
+
+    public Set<Integer> getVendorCodes() {
+        return vendorCodes;
+    }
+
+    public void setVendorCodes(final Set<Integer> vendorCodes) {
+        this.vendorCodes = vendorCodes;
+    }
+
+}
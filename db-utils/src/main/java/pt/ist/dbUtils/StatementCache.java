@@ -0,0 +1,163 @@
+package pt.ist.dbUtils;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the prepared and callable statements of one connection, keyed by query string.
+ * 
+ * Statements are checked out of the cache while in use and only put back when released, so a query that is executed again
+ * while its previous result set is still being processed simply gets a statement of its own. When more than
+ * <code>maxSize</code> statements of a kind are idle, the least recently used one is closed. A cache with a maximum size of
+ * zero closes every statement on release.
+ */
+public class StatementCache {
+
+    private static final AtomicLong totalHits = new AtomicLong();
+
+    private static final AtomicLong totalMisses = new AtomicLong();
+
+    private final Connection connection;
+
+    private final int maxSize;
+
+    private final Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f,
+            true);
+
+    private final Map<String, CallableStatement> callableStatements = new LinkedHashMap<String, CallableStatement>(16, 0.75f,
+            true);
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    public StatementCache(final Connection connection, final int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+    }
+
+    public PreparedStatement prepareStatement(final String queryString) throws SQLException {
+        final PreparedStatement preparedStatement = preparedStatements.remove(queryString);
+        if (preparedStatement != null) {
+            hit();
+            return preparedStatement;
+        }
+        miss();
+        return connection.prepareStatement(queryString);
+    }
+
+    public CallableStatement prepareCall(final String queryString) throws SQLException {
+        final CallableStatement callableStatement = callableStatements.remove(queryString);
+        if (callableStatement != null) {
+            hit();
+            return callableStatement;
+        }
+        miss();
+        return connection.prepareCall(queryString);
+    }
+
+    public void releaseStatement(final String queryString, final PreparedStatement preparedStatement) {
+        release(preparedStatements, queryString, preparedStatement);
+    }
+
+    public void releaseCall(final String queryString, final CallableStatement callableStatement) {
+        release(callableStatements, queryString, callableStatement);
+    }
+
+    private <T extends PreparedStatement> void release(final Map<String, T> statements, final String queryString,
+            final T statement) {
+        if (maxSize <= 0 || statements.containsKey(queryString)) {
+            close(statement);
+            return;
+        }
+        try {
+            statement.clearParameters();
+        } catch (final SQLException e) {
+            close(statement);
+            return;
+        }
+        statements.put(queryString, statement);
+        if (statements.size() > maxSize) {
+            final Iterator<Entry<String, T>> iterator = statements.entrySet().iterator();
+            final T eldest = iterator.next().getValue();
+            iterator.remove();
+            evictions++;
+            close(eldest);
+        }
+    }
+
+    public void clear() {
+        closeAll(preparedStatements);
+        closeAll(callableStatements);
+    }
+
+    private static void closeAll(final Map<String, ? extends Statement> statements) {
+        for (final Statement statement : statements.values()) {
+            close(statement);
+        }
+        statements.clear();
+    }
+
+    private static void close(final Statement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void hit() {
+        hits++;
+        totalHits.incrementAndGet();
+    }
+
+    private void miss() {
+        misses++;
+        totalMisses.incrementAndGet();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return preparedStatements.size() + callableStatements.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Hits over all the statement caches of this JVM.
+     */
+    public static long getTotalHits() {
+        return totalHits.get();
+    }
+
+    /**
+     * Misses over all the statement caches of this JVM.
+     */
+    public static long getTotalMisses() {
+        return totalMisses.get();
+    }
+
+}
@@ -1,6 +1,7 @@
 package pt.ist.dbUtils;
 
 import java.sql.SQLException;
+import java.util.List;
 
 public abstract class TaskWithExternalDbOperation extends TaskWithExternalDbOperation_Base {
 
@@ -29,6 +30,16 @@ public abstract class TaskWithExternalDbOperation extends TaskWithExternalDbOper
             handle(e);
         }
 
+        @Override
+        protected boolean isIdempotent() {
+            return instance.isIdempotent();
+        }
+
+        @Override
+        protected RetryPolicy getRetryPolicy() {
+            return instance.getRetryPolicy();
+        }
+
     }
 
     @Override
@@ -54,8 +65,43 @@ public abstract class TaskWithExternalDbOperation extends TaskWithExternalDbOper
         }
     }
 
+    /**
+     * Runs the partitions on up to <code>parallelism</code> worker threads, each partition in a transaction of its own that
+     * commits or aborts independently of the task's transaction. While a partition runs, {@link #executeQuery(ExternalDbQuery)}
+     * on its worker thread executes in the partition's transaction.
+     */
+    protected <T> List<ExternalDbPartitionResult<T>> executePartitions(final List<? extends ExternalDbPartition<T>> partitions,
+            final int parallelism) {
+        final ExternalDbPartitionExecutor executor = new ExternalDbPartitionExecutor(getDbPropertyPrefix(), parallelism) {
+
+            @Override
+            protected void beforePartition(final DbTransaction dbTransaction) {
+                transaction.set(dbTransaction);
+            }
+
+            @Override
+            protected void afterPartition(final DbTransaction dbTransaction) {
+                transaction.remove();
+            }
+
+        };
+        return executor.execute(partitions);
+    }
+
     protected abstract String getDbPropertyPrefix();
 
+    /**
+     * Tasks that can safely run {@link #doOperation()} again after a transient database failure should return true, in which
+     * case the whole operation is retried on a fresh connection according to {@link #getRetryPolicy()}.
+     */
+    protected boolean isIdempotent() {
+        return false;
+    }
+
+    protected RetryPolicy getRetryPolicy() {
+        return RetryPolicy.fromProperties(getDbPropertyPrefix());
+    }
+
     protected abstract void doOperation() throws SQLException;
 
     protected void handle(final SQLException e) {
@@ -0,0 +1,90 @@
+package pt.ist.dbUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPoolConfig config;
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        config = new ConnectionPoolConfig();
+        config.setMaxSize(2);
+        config.setMaxWait(50);
+        pool = new ConnectionPool(H2Database.newConnectionFactory(0), config);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void releasedConnectionIsHandedOutAgain() throws SQLException {
+        final DbConnection first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+        pool.acquire();
+        final DbConnection second = pool.acquire();
+        try {
+            pool.acquire();
+            fail();
+        } catch (final SQLException e) {
+            assertEquals("error.connection.pool.exhausted", e.getMessage());
+        }
+        pool.release(second);
+        assertSame(second, pool.acquire());
+    }
+
+    @Test
+    public void discardedConnectionFreesItsSlot() throws SQLException {
+        pool.acquire();
+        final DbConnection second = pool.acquire();
+        pool.discard(second);
+        assertEquals(1, pool.getSize());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void expiredConnectionsAreEvicted() throws SQLException {
+        config.setIdleTimeout(0);
+        final DbConnection first = pool.acquire();
+        pool.release(first);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getSize());
+
+        config.setIdleTimeout(60000);
+        config.setMaxLifetime(0);
+        final DbConnection second = pool.acquire();
+        pool.release(second);
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void staleConnectionIsValidatedBeforeReuse() throws SQLException {
+        config.setValidationInterval(0);
+        final DbConnection first = pool.acquire();
+        pool.release(first);
+        first.getConnection().close();
+        final DbConnection second = pool.acquire();
+        assertNotSame(first, second);
+        assertEquals(1, pool.getSize());
+    }
+
+}
@@ -0,0 +1,309 @@
+package pt.ist.dbUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DbTransactionTest {
+
+    private static final int STUDENTS = 1000;
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        H2Database.createStudentTable(STUDENTS);
+        pool = H2Database.newPool(4, 16);
+        ConnectionProviders.register(H2Database.PREFIX, pool);
+    }
+
+    @After
+    public void tearDown() {
+        ConnectionProviders.shutdown();
+    }
+
+    private static int countStudents() {
+        final int[] count = new int[1];
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                executeQuery(new ExternalDbQuery() {
+                    @Override
+                    public String getQueryString() {
+                        return "SELECT COUNT(*) FROM STUDENT";
+                    }
+
+                    @Override
+                    public void processResultSet(final ResultSet resultSet) throws SQLException {
+                        resultSet.next();
+                        count[0] = resultSet.getInt(1);
+                    }
+                });
+            }
+        }.execute();
+        return count[0];
+    }
+
+    @Test
+    public void queryReadsResultSet() {
+        final List<String> names = new ArrayList<String>();
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                executeQuery(new ExternalDbQuery() {
+                    @Override
+                    public String getQueryString() {
+                        return "SELECT NAME FROM STUDENT WHERE ID <= 3 ORDER BY ID";
+                    }
+
+                    @Override
+                    public void processResultSet(final ResultSet resultSet) throws SQLException {
+                        while (resultSet.next()) {
+                            names.add(resultSet.getString(1));
+                        }
+                    }
+                });
+            }
+        }.execute();
+        assertEquals(Arrays.asList("student1", "student2", "student3"), names);
+    }
+
+    @Test
+    public void callBindsParametersAndReadsResultSet() {
+        final int[] result = new int[1];
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                executeQuery(new ExternalDbCall() {
+                    @Override
+                    public String getQueryString() {
+                        return "{call ABS(?)}";
+                    }
+
+                    @Override
+                    public void prepareCall(final CallableStatement callableStatement) throws SQLException {
+                        callableStatement.setInt(1, -42);
+                    }
+
+                    @Override
+                    public void processResultSet(final ResultSet resultSet, final CallableStatement callableStatement)
+                            throws SQLException {
+                        resultSet.next();
+                        result[0] = resultSet.getInt(1);
+                    }
+
+                    @Override
+                    public void processResultSet(final ResultSet resultSet) throws SQLException {
+                        fail();
+                    }
+                });
+            }
+        }.execute();
+        assertEquals(42, result[0]);
+    }
+
+    @Test
+    public void rowQueryStreamsRowsAndHonoursMaxRows() {
+        final ExternalDbRowQuery query = new ExternalDbRowQuery() {
+            @Override
+            public String getQueryString() {
+                return "SELECT ID FROM STUDENT ORDER BY ID";
+            }
+
+            @Override
+            protected void processRow(final ResultSet resultSet) throws SQLException {
+                assertEquals(getRowCount(), resultSet.getLong(1));
+            }
+        };
+        query.setFetchSize(50);
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                executeQuery(query);
+                assertEquals(STUDENTS, query.getRowCount());
+                query.setMaxRows(10);
+                executeQuery(query);
+                assertEquals(10, query.getRowCount());
+            }
+        }.execute();
+    }
+
+    @Test
+    public void batchInsertsEveryRowAndReportsUpdateCounts() {
+        final int[] updated = new int[1];
+        final ExternalDbBatch batch = new ExternalDbBatch() {
+            @Override
+            public String getQueryString() {
+                return "INSERT INTO STUDENT (ID, NAME) VALUES (?, ?)";
+            }
+
+            @Override
+            public void processUpdateCount(final int row, final int updateCount) {
+                assertEquals(updated[0], row);
+                updated[0] += updateCount;
+            }
+        };
+        batch.setBatchSize(64);
+        for (int i = 1; i <= 500; i++) {
+            batch.addParameters(STUDENTS + i, "new" + i);
+        }
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                executeQuery(batch);
+            }
+        }.execute();
+        assertEquals(500, updated[0]);
+        assertEquals(STUDENTS + 500, countStudents());
+    }
+
+    @Test
+    public void failedOperationIsRolledBack() {
+        final ExternalDbBatch batch = new ExternalDbBatch() {
+            @Override
+            public String getQueryString() {
+                return "DELETE FROM STUDENT WHERE ID = ?";
+            }
+        };
+        batch.addParameters(1);
+        try {
+            new H2Database.Operation() {
+                @Override
+                protected void doOperation() throws SQLException {
+                    executeQuery(batch);
+                    throw new SQLException("error.test");
+                }
+            }.execute();
+            fail();
+        } catch (final Error e) {
+            assertEquals("error.test", e.getCause().getMessage());
+        }
+        assertEquals(STUDENTS, countStudents());
+    }
+
+    @Test
+    public void connectionsAndStatementsAreReusedAcrossTransactions() {
+        countStudents();
+        final long hits = StatementCache.getTotalHits();
+        countStudents();
+        countStudents();
+        assertEquals(hits + 2, StatementCache.getTotalHits());
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void connectionProviderIsConfiguredFromProperties() throws SQLException {
+        ConnectionProviders.shutdown();
+        final DbTransaction transaction = new H2Database.Operation() {
+            @Override
+            protected void doOperation() {
+            }
+        };
+        assertEquals(H2Database.DRIVER, transaction.getDriverClassName());
+        assertEquals(H2Database.URL, transaction.getDatabaseUrl());
+        final ConnectionProvider provider = ConnectionProviders.getProvider(transaction);
+        assertTrue(provider instanceof ConnectionPool);
+        assertSame(provider, ConnectionProviders.getProvider(transaction));
+        assertEquals(STUDENTS, countStudents());
+    }
+
+    @Test
+    public void idempotentOperationIsRetriedOnTransientFailure() {
+        final int[] attempts = new int[1];
+        new H2Database.Operation() {
+            @Override
+            protected void doOperation() throws SQLException {
+                attempts[0]++;
+                executeQuery(new ExternalDbBatch() {
+                    {
+                        addParameters(1);
+                    }
+
+                    @Override
+                    public String getQueryString() {
+                        return "DELETE FROM STUDENT WHERE ID = ?";
+                    }
+                });
+                if (attempts[0] == 1) {
+                    throw new SQLTransientException("error.test.transient");
+                }
+            }
+
+            @Override
+            protected boolean isIdempotent() {
+                return true;
+            }
+
+            @Override
+            protected RetryPolicy getRetryPolicy() {
+                final RetryPolicy retryPolicy = new RetryPolicy(3);
+                retryPolicy.setInitialBackoff(1);
+                return retryPolicy;
+            }
+        }.execute();
+        assertEquals(2, attempts[0]);
+        assertEquals(STUDENTS - 1, countStudents());
+    }
+
+    @Test
+    public void retryPolicyRecognisesVendorCodesAndSqlStates() {
+        final RetryPolicy retryPolicy = new RetryPolicy(3);
+        assertTrue(retryPolicy.isTransient(new SQLException("ORA-08177", "72000", 8177)));
+        assertTrue(retryPolicy.isTransient(new SQLException("connection reset", "08006", 0)));
+        assertFalse(retryPolicy.isTransient(new SQLException("ORA-00001", "23000", 1)));
+        assertFalse(retryPolicy.shouldRetry(new SQLException("ORA-08177", "72000", 8177), 3));
+    }
+
+    @Test
+    public void partitionsRunInTheirOwnTransactions() {
+        final List<ExternalDbPartition<Integer>> partitions = new ArrayList<ExternalDbPartition<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            final int first = i * 250 + 1;
+            partitions.add(new ExternalDbPartition<Integer>() {
+                @Override
+                public Integer doOperation(final DbTransaction dbTransaction) throws SQLException {
+                    final ExternalDbRowQuery query = new ExternalDbRowQuery() {
+                        @Override
+                        public String getQueryString() {
+                            return "SELECT ID FROM STUDENT WHERE ID BETWEEN " + first + " AND " + (first + 249);
+                        }
+
+                        @Override
+                        protected void processRow(final ResultSet resultSet) {
+                        }
+                    };
+                    dbTransaction.executeQuery(query);
+                    if (first == 1) {
+                        throw new SQLException("error.test");
+                    }
+                    return (int) query.getRowCount();
+                }
+            });
+        }
+        final List<ExternalDbPartitionResult<Integer>> results =
+                new ExternalDbPartitionExecutor(H2Database.PREFIX, 2).execute(partitions);
+        assertEquals(4, results.size());
+        assertFalse(results.get(0).isSuccessful());
+        for (int i = 1; i < 4; i++) {
+            assertSame(partitions.get(i), results.get(i).getPartition());
+            assertEquals(Integer.valueOf(250), results.get(i).getValue());
+        }
+        assertEquals(0, pool.getSize() - pool.getIdleCount());
+    }
+
+}
@@ -0,0 +1,67 @@
+package pt.ist.dbUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory H2 database in Oracle compatibility mode, configured under the <code>h2test</code> property prefix in the test
+ * configuration.properties.
+ */
+public class H2Database {
+
+    public static final String PREFIX = "h2test";
+
+    public static final String DRIVER = "org.h2.Driver";
+
+    public static final String URL = "jdbc:h2:mem:dbutils;MODE=Oracle;DB_CLOSE_DELAY=-1";
+
+    public static ConnectionProvider newConnectionFactory(final int statementCacheSize) {
+        return new DriverManagerConnectionProvider(DRIVER, URL, statementCacheSize);
+    }
+
+    public static ConnectionPool newPool(final int maxSize, final int statementCacheSize) {
+        final ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setMaxSize(maxSize);
+        return new ConnectionPool(PREFIX, newConnectionFactory(statementCacheSize), config);
+    }
+
+    public static void execute(final String... statements) throws SQLException {
+        try {
+            Class.forName(DRIVER);
+        } catch (final ClassNotFoundException e) {
+            throw new Error(e);
+        }
+        final Connection connection = DriverManager.getConnection(URL);
+        try {
+            final Statement statement = connection.createStatement();
+            try {
+                for (final String sql : statements) {
+                    statement.execute(sql);
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    public static void createStudentTable(final int rows) throws SQLException {
+        execute("DROP TABLE IF EXISTS STUDENT", "CREATE TABLE STUDENT (ID NUMBER(10) PRIMARY KEY, NAME VARCHAR2(100))");
+        if (rows > 0) {
+            execute("INSERT INTO STUDENT SELECT X, 'student' || X FROM SYSTEM_RANGE(1, " + rows + ")");
+        }
+    }
+
+    public static abstract class Operation extends ExternalDbOperation {
+
+        @Override
+        protected String getDbPropertyPrefix() {
+            return PREFIX;
+        }
+
+    }
+
+}
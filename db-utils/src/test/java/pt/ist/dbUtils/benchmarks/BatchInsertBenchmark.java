@@ -0,0 +1,71 @@
+package pt.ist.dbUtils.benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import pt.ist.dbUtils.ConnectionProviders;
+import pt.ist.dbUtils.ExternalDbBatch;
+import pt.ist.dbUtils.H2Database;
+
+/**
+ * Inserting {@value #ROWS} rows in one transaction through an {@link ExternalDbBatch}; a batch size of one is equivalent to a
+ * round trip per row. Results are per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchInsertBenchmark {
+
+    private static final int ROWS = 10000;
+
+    @Param({ "1", "100", "1000" })
+    public int batchSize;
+
+    private ExternalDbBatch batch;
+
+    @Setup
+    public void setUp() {
+        BenchmarkTransaction.configure(1, 16);
+        batch = new ExternalDbBatch() {
+            @Override
+            public String getQueryString() {
+                return "INSERT INTO STUDENT (ID, NAME) VALUES (?, ?)";
+            }
+        };
+        batch.setBatchSize(batchSize);
+        for (int i = 1; i <= ROWS; i++) {
+            batch.addParameters(i, "student" + i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTable() throws SQLException {
+        H2Database.createStudentTable(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConnectionProviders.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertRows() throws SQLException {
+        final BenchmarkTransaction transaction = new BenchmarkTransaction();
+        transaction.executeQuery(batch);
+        transaction.commit();
+    }
+
+}
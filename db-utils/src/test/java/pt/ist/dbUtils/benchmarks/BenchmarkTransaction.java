@@ -0,0 +1,41 @@
+package pt.ist.dbUtils.benchmarks;
+
+import pt.ist.dbUtils.ConnectionPool;
+import pt.ist.dbUtils.ConnectionPoolConfig;
+import pt.ist.dbUtils.ConnectionProvider;
+import pt.ist.dbUtils.ConnectionProviders;
+import pt.ist.dbUtils.DbTransaction;
+import pt.ist.dbUtils.DriverManagerConnectionProvider;
+import pt.ist.dbUtils.H2Database;
+
+/**
+ * Transaction bound to a connection provider registered under its own prefix, so that each benchmark chooses pooling and
+ * statement caching independently of the configuration properties.
+ */
+public class BenchmarkTransaction extends DbTransaction {
+
+    public static final String PREFIX = "h2bench";
+
+    public static void configure(final int poolSize, final int statementCacheSize) {
+        final ConnectionProvider connectionFactory =
+                new DriverManagerConnectionProvider(H2Database.DRIVER, H2Database.URL, statementCacheSize);
+        if (poolSize > 0) {
+            final ConnectionPoolConfig config = new ConnectionPoolConfig();
+            config.setMaxSize(poolSize);
+            ConnectionProviders.register(PREFIX, new ConnectionPool(PREFIX, connectionFactory, config));
+        } else {
+            ConnectionProviders.register(PREFIX, connectionFactory);
+        }
+    }
+
+    @Override
+    protected String getDbPropertyPrefix() {
+        return PREFIX;
+    }
+
+    @Override
+    protected int getDefaultFetchSize() {
+        return 0;
+    }
+
+}
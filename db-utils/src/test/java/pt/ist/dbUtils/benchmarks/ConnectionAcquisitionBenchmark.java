@@ -0,0 +1,61 @@
+package pt.ist.dbUtils.benchmarks;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import pt.ist.dbUtils.ConnectionProviders;
+import pt.ist.dbUtils.ExternalDbQuery;
+
+/**
+ * A whole short transaction: open a connection, run a trivial query and commit. A pool size of zero opens a physical
+ * connection per transaction, as DbTransaction did before pooling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionAcquisitionBenchmark {
+
+    @Param({ "0", "4" })
+    public int poolSize;
+
+    private final ExternalDbQuery query = new ExternalDbQuery() {
+        @Override
+        public String getQueryString() {
+            return "SELECT 1 FROM DUAL";
+        }
+
+        @Override
+        public void processResultSet(final ResultSet resultSet) throws SQLException {
+            resultSet.next();
+        }
+    };
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkTransaction.configure(poolSize, 16);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConnectionProviders.shutdown();
+    }
+
+    @Benchmark
+    public void shortTransaction() throws SQLException {
+        final BenchmarkTransaction transaction = new BenchmarkTransaction();
+        transaction.executeQuery(query);
+        transaction.commit();
+    }
+
+}
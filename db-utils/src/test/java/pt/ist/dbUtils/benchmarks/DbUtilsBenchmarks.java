@@ -0,0 +1,20 @@
+package pt.ist.dbUtils.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark of this package. Any JMH command line option may be given, e.g. <code>-f 1 -wi 3 -i 5</code>.
+ */
+public class DbUtilsBenchmarks {
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(commandLineOptions).include(DbUtilsBenchmarks.class.getPackage().getName() + ".")
+                .forks(1).build()).run();
+    }
+
+}
@@ -0,0 +1,68 @@
+package pt.ist.dbUtils.benchmarks;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pt.ist.dbUtils.ConnectionProviders;
+import pt.ist.dbUtils.ExternalDbRowQuery;
+import pt.ist.dbUtils.H2Database;
+
+/**
+ * Reading {@value #ROWS} rows through an {@link ExternalDbRowQuery} at different fetch sizes. An in-memory database has no
+ * network round trips, so this mostly measures the per-row overhead of db-utils itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LargeResultSetBenchmark {
+
+    private static final int ROWS = 200000;
+
+    @Param({ "10", "500" })
+    public int fetchSize;
+
+    @Setup
+    public void setUp() throws SQLException {
+        H2Database.createStudentTable(ROWS);
+        BenchmarkTransaction.configure(1, 16);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConnectionProviders.shutdown();
+    }
+
+    @Benchmark
+    public long readRows(final Blackhole blackhole) throws SQLException {
+        final ExternalDbRowQuery query = new ExternalDbRowQuery() {
+            @Override
+            public String getQueryString() {
+                return "SELECT ID, NAME FROM STUDENT";
+            }
+
+            @Override
+            protected void processRow(final ResultSet resultSet) throws SQLException {
+                blackhole.consume(resultSet.getLong(1));
+                blackhole.consume(resultSet.getString(2));
+            }
+        };
+        query.setFetchSize(fetchSize);
+        final BenchmarkTransaction transaction = new BenchmarkTransaction();
+        transaction.executeQuery(query);
+        transaction.commit();
+        return query.getRowCount();
+    }
+
+}
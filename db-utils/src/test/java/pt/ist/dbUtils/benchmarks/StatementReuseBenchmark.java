@@ -0,0 +1,64 @@
+package pt.ist.dbUtils.benchmarks;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import pt.ist.dbUtils.ConnectionProviders;
+import pt.ist.dbUtils.ExternalDbQuery;
+import pt.ist.dbUtils.H2Database;
+
+/**
+ * The same lookup executed repeatedly inside one open transaction, with and without the statement cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatementReuseBenchmark {
+
+    @Param({ "0", "32" })
+    public int statementCacheSize;
+
+    private BenchmarkTransaction transaction;
+
+    private final ExternalDbQuery query = new ExternalDbQuery() {
+        @Override
+        public String getQueryString() {
+            return "SELECT NAME FROM STUDENT WHERE ID = 500";
+        }
+
+        @Override
+        public void processResultSet(final ResultSet resultSet) throws SQLException {
+            resultSet.next();
+        }
+    };
+
+    @Setup
+    public void setUp() throws SQLException {
+        H2Database.createStudentTable(1000);
+        BenchmarkTransaction.configure(1, statementCacheSize);
+        transaction = new BenchmarkTransaction();
+    }
+
+    @TearDown
+    public void tearDown() {
+        transaction.commit();
+        ConnectionProviders.shutdown();
+    }
+
+    @Benchmark
+    public void repeatedQuery() throws SQLException {
+        transaction.executeQuery(query);
+    }
+
+}
@@ -30,6 +30,7 @@ import pt.utl.ist.fenix.tools.file.FilesetMetadataQuery;
 import pt.utl.ist.fenix.tools.file.VirtualPath;
 import pt.utl.ist.fenix.tools.file.XMLSerializable;
 import pt.utl.ist.fenix.tools.file.utils.FileUtils;
+import pt.utl.ist.fenix.tools.http.client.HttpClientFactory;
 
 public class DSpaceHttpClient implements IDSpaceClient {
 
@@ -159,7 +160,7 @@ public class DSpaceHttpClient implements IDSpaceClient {
 
     @Override
     public InputStream retrieveStreamForFile(String uniqueIdentifier) throws DSpaceClientException {
-        HttpClient client = new HttpClient();
+        HttpClient client = HttpClientFactory.getHttpClient();
         String downloadUrl =
                 remoteDownloadInterfaceUrl + "?username=" + username + "&password=" + password + "&uniqueId=" + uniqueIdentifier;
         GetMethod gm = new GetMethod(downloadUrl);
@@ -168,13 +169,17 @@ public class DSpaceHttpClient implements IDSpaceClient {
         try {
             result = client.executeMethod(gm);
             if (result == HttpStatus.SC_OK) {
+                // the connection goes back to the pool when the stream is read to the end or closed
                 return gm.getResponseBodyAsStream();
             } else {
+                gm.releaseConnection();
                 throw new DSpaceClientException("Unable get stream for " + uniqueIdentifier);
             }
         } catch (HttpException e) {
+            gm.releaseConnection();
             throw new DSpaceClientException(e);
         } catch (IOException e) {
+            gm.releaseConnection();
             throw new DSpaceClientException(e);
         }
 
@@ -200,7 +205,7 @@ public class DSpaceHttpClient implements IDSpaceClient {
         // by now all the descriptors recursively should be in
         // allDescriptorsRecursive...
         // now download them all via http
-        HttpClient client = new HttpClient();
+        HttpClient client = HttpClientFactory.getHttpClient();
         for (FileDescriptor desc : allDescriptorsRecursive) {
             String downloadUrl =
                     remoteDownloadInterfaceUrl + "?username=" + username + "&password=" + password + "&uniqueId="
@@ -260,7 +265,7 @@ public class DSpaceHttpClient implements IDSpaceClient {
         PostMethod post = new PostMethod(remoteInterfaceUrl);
         DspaceResponse response;
         try {
-            HttpClient client = new HttpClient();
+            HttpClient client = HttpClientFactory.getHttpClient();
             Part[] parts = new Part[4 + (additionalParts != null ? additionalParts.length : 0)];
             parts[0] = new StringPart("username", username, DSPACE_ENCODING);
             parts[1] = new StringPart("password", password, DSPACE_ENCODING);
@@ -1,17 +1,15 @@
 package pt.utl.ist.fenix.tools.file.dspace;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.logging.Level;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 import javax.naming.NamingException;
@@ -26,11 +24,11 @@ import pt.utl.ist.fenix.tools.file.FileSetMetaData;
 import pt.utl.ist.fenix.tools.file.FileSetQueryResults;
 import pt.utl.ist.fenix.tools.file.FilesetMetadataQuery;
 import pt.utl.ist.fenix.tools.file.VirtualPath;
+import pt.utl.ist.fenix.tools.file.rmi.FileSetTransfer;
+import pt.utl.ist.fenix.tools.file.rmi.FileTransferMode;
 import pt.utl.ist.fenix.tools.file.rmi.IRemoteFile;
 import pt.utl.ist.fenix.tools.file.rmi.IRemoteFileSetManager;
 import pt.utl.ist.fenix.tools.file.rmi.RMIConfig;
-import pt.utl.ist.fenix.tools.file.rmi.RemoteFileInputStream;
-import pt.utl.ist.fenix.tools.file.rmi.RemoteFileOutputStream;
 import pt.utl.ist.fenix.tools.file.utils.FileUtils;
 
 /**
@@ -51,13 +49,34 @@ public class DSpaceRmiClient implements IDSpaceClient {
 
     private String password = null;
 
-    private int bytesStartLength = RMIConfig.DEFAULT_REMOTE_STREAM_BUFFER_MIN_PARAM;
+    private String dspaceManagerJndiName = null;
 
-    private int bytesIncreaseLength = RMIConfig.DEFAULT_REMOTE_STREAM_BUFFER_BLOCK_PARAM;
+    /**
+     * The transfers that failed part way, with where they were moving the files to, so that uploading the same file set or
+     * retrieving the same descriptor again only moves the files that were missing. The values must not refer to their keys,
+     * which would then never be collected
+     */
+    private final Map<Object, PendingTransfer> pendingTransfers =
+            Collections.synchronizedMap(new WeakHashMap<Object, PendingTransfer>());
 
-    private int maxBytesLength = RMIConfig.DEFAULT_REMOTE_STREAM_BUFFER_MAX_PARAM;
+    private static class PendingTransfer {
 
-    private String dspaceManagerJndiName = null;
+        private final FileSetTransfer transfer;
+
+        private final IRemoteFile remoteDir;
+
+        private final File localBaseDir;
+
+        private final FileSet fileSet;
+
+        private PendingTransfer(FileSetTransfer transfer, IRemoteFile remoteDir, File localBaseDir, FileSet fileSet) {
+            this.transfer = transfer;
+            this.remoteDir = remoteDir;
+            this.localBaseDir = localBaseDir;
+            this.fileSet = fileSet;
+        }
+
+    }
 
     /*
      * public FileSetDescriptor uploadFileSet(FileSet fs) throws DSpaceClientException { try { IDSpaceRMIOutputStream
@@ -130,16 +149,30 @@ public class DSpaceRmiClient implements IDSpaceClient {
             RMIConfig.getInstance().setSslTrustStorePass(ctx.getProperty(RMIConfig.RMI_SSL_TRUSTSTORE_PASS_PARAM));
             RMIConfig.getInstance().initializeSocketFactories();
 
-            dspaceManagerJndiName = ctx.getProperty("dspace.rmi.server.name");
-            try {
-                bytesStartLength = Integer.parseInt(ctx.getProperty(RMIConfig.REMOTE_STREAM_BUFFER_MIN_PARAM));
-                bytesIncreaseLength = Integer.parseInt(ctx.getProperty(RMIConfig.REMOTE_STREAM_BUFFER_BLOCK_PARAM));
-                maxBytesLength = Integer.parseInt(ctx.getProperty(RMIConfig.REMOTE_STREAM_BUFFER_MAX_PARAM));
+            String transferMode = ctx.getProperty(RMIConfig.FILE_TRANSFER_MODE_PARAM);
+            if (transferMode != null) {
+                RMIConfig.getInstance().setFileTransferMode(FileTransferMode.valueOf(transferMode.trim()));
+            }
 
-            } catch (Exception e) {
-                logger.log(Level.INFO, "Unable to parse buffer block sizes... Assuming defaults!");
+            String compressions = ctx.getProperty(RMIConfig.TRANSFER_COMPRESSION_PARAM);
+            if (compressions != null) {
+                RMIConfig.getInstance().setTransferCompressions(compressions);
+            }
+            String compressionLevel = ctx.getProperty(RMIConfig.TRANSFER_COMPRESSION_LEVEL_PARAM);
+            if (compressionLevel != null) {
+                RMIConfig.getInstance().setTransferCompressionLevel(Integer.parseInt(compressionLevel.trim()));
+            }
+            String uncompressedExtensions = ctx.getProperty(RMIConfig.TRANSFER_COMPRESSION_SKIP_PARAM);
+            if (uncompressedExtensions != null) {
+                RMIConfig.getInstance().setUncompressedExtensions(uncompressedExtensions);
+            }
+            String transferThreads = ctx.getProperty(RMIConfig.FILE_SET_TRANSFER_THREADS_PARAM);
+            if (transferThreads != null) {
+                RMIConfig.getInstance().setFileSetTransferThreads(Integer.parseInt(transferThreads.trim()));
             }
 
+            dspaceManagerJndiName = ctx.getProperty("dspace.rmi.server.name");
+
         } catch (Exception e) {
             throw new RuntimeException("Unable to read configuration properties for " + getClass().getName(), e);
         }
@@ -156,12 +189,19 @@ public class DSpaceRmiClient implements IDSpaceClient {
             throws DSpaceClientException {
         try {
             String localBaseDir = fs.getContentFile(0).getParent();
-            IRemoteFile remoteDir = findRemote().getBaseRemoteDir(username, password);
+            PendingTransfer pending = pendingTransfers.remove(fs);
+            IRemoteFile remoteDir = pending != null ? pending.remoteDir : findRemote().getBaseRemoteDir(username, password);
+            FileSetTransfer transfer = pending != null ? pending.transfer : new FileSetTransfer();
             long timeStart = System.currentTimeMillis();
-            uploadTransferFileSetRecursive(localBaseDir, remoteDir, fs);
+            try {
+                uploadTransferFileSetRecursive(localBaseDir, remoteDir, fs, transfer);
+            } catch (IOException e) {
+                pendingTransfers.put(fs, new PendingTransfer(transfer, remoteDir, null, null));
+                throw e;
+            }
             FileSetDescriptor retVal =
                     findRemote().uploadFileSet(remoteDir, path, originalFilename, privateFile, fs, username, password);
-            System.out.println("RMI: uploadFileSet took " + (System.currentTimeMillis() - timeStart) + " ms");
+            logger.fine("RMI: uploadFileSet took " + (System.currentTimeMillis() - timeStart) + " ms");
             return retVal;
         } catch (RemoteException e) {
             throw new DSpaceClientException(e);
@@ -170,36 +210,55 @@ public class DSpaceRmiClient implements IDSpaceClient {
         }
     }
 
+    /**
+     * Uploads all the files of the file set tree, several at a time, see {@link FileSetTransfer}.
+     */
     public void uploadTransferFileSetRecursive(String localBaseDir, IRemoteFile remoteDir, FileSet fs) throws IOException,
             RemoteException {
-        HashMap<String, String> pathReplacements = new HashMap<String, String>();
-
-        for (File f : fs.getAllFiles()) {
-            String relativePath = FileUtils.makeRelativePath(localBaseDir, f.getAbsolutePath());
-            remoteDir.createFile(relativePath);
-            RemoteFileOutputStream rfos = new RemoteFileOutputStream(remoteDir);
-            FileUtils.adaptativeCopyInputStreamToOutputStream(new FileInputStream(f), rfos, bytesStartLength, maxBytesLength,
-                    bytesIncreaseLength);
-            rfos.close();
-            pathReplacements.put(f.getAbsolutePath(), remoteDir.getAbsolutePath());
-        }
+        uploadTransferFileSetRecursive(localBaseDir, remoteDir, fs, new FileSetTransfer());
+    }
 
-        for (Entry<String, String> pathReplacement : pathReplacements.entrySet()) {
-            fs.replaceFileWithAbsolutePath(pathReplacement.getKey(), pathReplacement.getValue());
-        }
-        for (FileSet childFs : fs.getChildSets()) {
-            uploadTransferFileSetRecursive(localBaseDir, remoteDir, childFs);
-        }
+    /**
+     * Same as {@link #uploadTransferFileSetRecursive(String, IRemoteFile, FileSet)}, through the given transfer. When it
+     * fails, calling this again with the same transfer and arguments only uploads the files that were not uploaded.
+     */
+    public void uploadTransferFileSetRecursive(String localBaseDir, IRemoteFile remoteDir, FileSet fs, FileSetTransfer transfer)
+            throws IOException, RemoteException {
+        transfer.upload(localBaseDir, remoteDir, fs);
+        logTransfer("uploaded", transfer);
+    }
+
+    private void logTransfer(String action, FileSetTransfer transfer) {
+        logger.fine("RMI: " + action + " " + transfer.getTransferredFiles() + " files, " + transfer.getTransferredBytes()
+                + " bytes in " + transfer.getElapsedMillis() + " ms (" + transfer.getBytesPerSecond() / 1024 + " KB/s)");
     }
 
     @Override
     public FileSet retrieveFileSet(FileSetDescriptor descriptor) throws DSpaceClientException {
         try {
-            IRemoteFile remoteBaseDir = findRemote().retrieveBaseRemoteDir(descriptor, username, password);
-            String remoteBaseDirAbsolutePath = remoteBaseDir.getAbsolutePath();
-            File localBaseDir = FileUtils.createTemporaryDir("DSpaceTempDownload", ".tmp");
-            FileSet remoteFileSet = descriptor.createRecursiveFileSet();
-            downloadTransferRecursiveFileSet(localBaseDir, remoteBaseDirAbsolutePath, remoteBaseDir, remoteFileSet);
+            PendingTransfer pending = pendingTransfers.remove(descriptor);
+            IRemoteFile remoteBaseDir;
+            File localBaseDir;
+            FileSet remoteFileSet;
+            FileSetTransfer transfer;
+            if (pending != null) {
+                remoteBaseDir = pending.remoteDir;
+                localBaseDir = pending.localBaseDir;
+                remoteFileSet = pending.fileSet;
+                transfer = pending.transfer;
+            } else {
+                remoteBaseDir = findRemote().retrieveBaseRemoteDir(descriptor, username, password);
+                localBaseDir = FileUtils.createTemporaryDir("DSpaceTempDownload", ".tmp");
+                remoteFileSet = descriptor.createRecursiveFileSet();
+                transfer = new FileSetTransfer();
+            }
+            try {
+                String remoteBaseDirAbsolutePath = remoteBaseDir.getAbsolutePath();
+                downloadTransferRecursiveFileSet(localBaseDir, remoteBaseDirAbsolutePath, remoteBaseDir, remoteFileSet, transfer);
+            } catch (IOException e) {
+                pendingTransfers.put(descriptor, new PendingTransfer(transfer, remoteBaseDir, localBaseDir, remoteFileSet));
+                throw e;
+            }
             return remoteFileSet;
         } catch (RemoteException e) {
             throw new DSpaceClientException(e);
@@ -208,30 +267,24 @@ public class DSpaceRmiClient implements IDSpaceClient {
         }
     }
 
+    /**
+     * Downloads all the files of the file set tree, several at a time, see {@link FileSetTransfer}.
+     */
     public void downloadTransferRecursiveFileSet(File localBaseDir, String remoteBaseDirAbsolutePath, IRemoteFile remoteBaseDir,
             FileSet remoteFileSet) throws IOException, RemoteException {
+        downloadTransferRecursiveFileSet(localBaseDir, remoteBaseDirAbsolutePath, remoteBaseDir, remoteFileSet,
+                new FileSetTransfer());
+    }
 
-        HashMap<String, String> pathReplacements = new HashMap<String, String>();
-
-        for (File f : remoteFileSet.getAllFiles()) {
-            String relativePath = FileUtils.makeRelativePath(remoteBaseDirAbsolutePath, f.getAbsolutePath());
-            File localFile = new File(localBaseDir, relativePath);
-            localFile.getParentFile().mkdirs();
-            localFile.createNewFile();
-            FileOutputStream fos = new FileOutputStream(localFile);
-            remoteBaseDir.getFile(relativePath);
-            RemoteFileInputStream rfis = new RemoteFileInputStream(remoteBaseDir);
-            FileUtils.adaptativeCopyInputStreamToOutputStream(rfis, fos, bytesStartLength, maxBytesLength, bytesIncreaseLength);
-            pathReplacements.put(remoteBaseDir.getAbsolutePath(), localFile.getAbsolutePath());
-        }
-
-        for (Entry<String, String> pathReplacement : pathReplacements.entrySet()) {
-            remoteFileSet.replaceFileWithAbsolutePath(pathReplacement.getKey(), pathReplacement.getValue());
-        }
-
-        for (FileSet childFs : remoteFileSet.getChildSets()) {
-            downloadTransferRecursiveFileSet(localBaseDir, remoteBaseDirAbsolutePath, remoteBaseDir, childFs);
-        }
+    /**
+     * Same as {@link #downloadTransferRecursiveFileSet(File, String, IRemoteFile, FileSet)}, through the given transfer.
+     * When it fails, calling this again with the same transfer and arguments only downloads the files that were not
+     * downloaded.
+     */
+    public void downloadTransferRecursiveFileSet(File localBaseDir, String remoteBaseDirAbsolutePath, IRemoteFile remoteBaseDir,
+            FileSet remoteFileSet, FileSetTransfer transfer) throws IOException, RemoteException {
+        transfer.download(remoteBaseDir, remoteBaseDirAbsolutePath, localBaseDir, remoteFileSet);
+        logTransfer("downloaded", transfer);
     }
 
     @Override
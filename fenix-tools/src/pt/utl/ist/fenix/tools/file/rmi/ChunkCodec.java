@@ -0,0 +1,183 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the chunks of one stream. Each chunk becomes a frame holding the way it was compressed, its original length and
+ * the compressed bytes, so frames can be decoded without knowing the negotiated {@link TransferCompression}. Chunks that don't
+ * get smaller are stored as they are, and after one of those the next few chunks are stored without trying, so incompressible
+ * contents cost little. Not thread safe.
+ */
+class ChunkCodec {
+
+    private static final byte STORED = 0;
+
+    private static final byte DEFLATED = 1;
+
+    private static final byte LZ = 2;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /**
+     * Chunks stored without trying to compress them after one that didn't compress
+     */
+    private static final int BACKOFF_CHUNKS = 8;
+
+    /**
+     * Chunks shorter than this, such as the last one of a file, don't start a backoff when they don't compress
+     */
+    private static final int BACKOFF_MIN_LENGTH = 4096;
+
+    private final TransferCompression compression;
+
+    private final int level;
+
+    private Deflater deflater;
+
+    private Inflater inflater;
+
+    private LzCodec lz;
+
+    private int backoff = 0;
+
+    ChunkCodec(TransferCompression compression, int level) {
+        this.compression = compression;
+        this.level = level;
+    }
+
+    /**
+     * @return the length of the largest frame a chunk of the given length can be encoded into
+     */
+    static int maxFrameLength(int chunkLength) {
+        return HEADER_LENGTH + chunkLength;
+    }
+
+    /**
+     * The codec for the compression named by the server, or null for NONE.
+     */
+    static ChunkCodec forCompression(String name) {
+        TransferCompression compression = TransferCompression.valueOf(name);
+        if (compression == TransferCompression.NONE) {
+            return null;
+        }
+        return new ChunkCodec(compression, RMIConfig.getInstance().getTransferCompressionLevel());
+    }
+
+    byte[] encode(byte[] chunk, int offset, int length) {
+        if (backoff > 0) {
+            backoff--;
+            return frame(STORED, length, chunk, offset, length);
+        }
+        byte[] compressed;
+        int compressedLength;
+        byte method;
+        if (compression == TransferCompression.DEFLATE) {
+            if (deflater == null) {
+                deflater = new Deflater(level, true);
+            }
+            deflater.reset();
+            deflater.setInput(chunk, offset, length);
+            deflater.finish();
+            compressed = new byte[length];
+            compressedLength = 0;
+            while (!deflater.finished() && compressedLength < compressed.length) {
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            if (!deflater.finished()) {
+                compressedLength = length;
+            }
+            method = DEFLATED;
+        } else if (compression == TransferCompression.LZ) {
+            if (lz == null) {
+                lz = new LzCodec();
+            }
+            compressed = new byte[LzCodec.maxCompressedLength(length)];
+            compressedLength = lz.compress(chunk, offset, length, compressed, 0);
+            method = LZ;
+        } else {
+            return frame(STORED, length, chunk, offset, length);
+        }
+        if (compressedLength >= length) {
+            if (length >= BACKOFF_MIN_LENGTH) {
+                backoff = BACKOFF_CHUNKS;
+            }
+            return frame(STORED, length, chunk, offset, length);
+        }
+        return frame(method, length, compressed, 0, compressedLength);
+    }
+
+    private static byte[] frame(byte method, int length, byte[] payload, int payloadOffset, int payloadLength) {
+        byte[] frame = new byte[HEADER_LENGTH + payloadLength];
+        frame[0] = method;
+        frame[1] = (byte) (length >>> 24);
+        frame[2] = (byte) (length >>> 16);
+        frame[3] = (byte) (length >>> 8);
+        frame[4] = (byte) length;
+        System.arraycopy(payload, payloadOffset, frame, HEADER_LENGTH, payloadLength);
+        return frame;
+    }
+
+    byte[] decode(byte[] frame) throws IOException {
+        if (frame.length < HEADER_LENGTH) {
+            throw new IOException("Truncated compressed chunk");
+        }
+        int length =
+                (frame[1] & 0xff) << 24 | (frame[2] & 0xff) << 16 | (frame[3] & 0xff) << 8 | (frame[4] & 0xff);
+        int payloadLength = frame.length - HEADER_LENGTH;
+        if (length < 0 || length > RMIConfig.MAX_REMOTE_STREAM_CHUNK) {
+            throw new IOException("Invalid compressed chunk length " + length);
+        }
+        byte[] chunk = new byte[length];
+        switch (frame[0]) {
+        case STORED:
+            if (payloadLength != length) {
+                throw new IOException("Invalid stored chunk length " + payloadLength);
+            }
+            System.arraycopy(frame, HEADER_LENGTH, chunk, 0, length);
+            break;
+        case DEFLATED:
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            }
+            inflater.reset();
+            inflater.setInput(frame, HEADER_LENGTH, payloadLength);
+            try {
+                int count = 0;
+                while (count < length) {
+                    int inflated = inflater.inflate(chunk, count, length - count);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated deflated chunk");
+                    }
+                    count += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt deflated chunk: " + e.getMessage());
+            }
+            break;
+        case LZ:
+            LzCodec.decompress(frame, HEADER_LENGTH, payloadLength, chunk, 0, length);
+            break;
+        default:
+            throw new IOException("Unknown chunk compression " + frame[0]);
+        }
+        return chunk;
+    }
+
+    /**
+     * Releases the native memory of the deflater and inflater.
+     */
+    void end() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+}
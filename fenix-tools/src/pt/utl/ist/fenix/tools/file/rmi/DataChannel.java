@@ -0,0 +1,346 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.RMISocketFactory;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single use socket that moves the contents of one file, outside of RMI. The server listens on a port created by the RMI
+ * server socket factory, any free one or one of {@link RMIConfig#getFirstDataChannelPort()} to
+ * {@link RMIConfig#getLastDataChannelPort()}, and accepts one connection, which must start with the token of the ticket.
+ * Then:
+ * <ul>
+ * <li>download: the server writes the file length, as a long, followed by the contents.</li>
+ * <li>upload: the client writes the length followed by the contents, and the server answers with a zero byte once the file
+ * is written and closed.</li>
+ * </ul>
+ * The contents are copied between the file and the socket streams in large blocks, without being marshalled or split in
+ * calls. The sockets of the RMI socket factories, plain or SSL, have no channel, so this is an ordinary copy through a user
+ * space buffer and not a zero copy transfer. When the ticket names a compression the contents are instead sent in chunks
+ * of {@link RMIConfig#getRemoteStreamChunkSize()}, each one encoded by a {@link ChunkCodec} and preceded by the length of
+ * the frame, as an int.
+ * <p>
+ * Clients give up connecting after {@link #CONNECT_TIMEOUT}. Once a connection failed, as when a firewall only lets the RMI
+ * ports through, data channels are no longer used, see {@link #isUnreachable()}.
+ */
+class DataChannel implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(DataChannel.class.getName());
+
+    /**
+     * Milliseconds the server waits for the client to connect, and both ends wait for data
+     */
+    private static final int TIMEOUT = 30000;
+
+    /**
+     * Milliseconds the client waits for the connection to be made
+     */
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static final int TOKEN_LENGTH = 16;
+
+    private static final long TRANSFER_BLOCK = 8 * 1024 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile boolean unreachable = false;
+
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RemoteFileDataChannel");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ServerSocket serverSocket;
+
+    private final File file;
+
+    private final boolean upload;
+
+    private final byte[] token;
+
+    private final TransferCompression compression;
+
+    private DataChannel(ServerSocket serverSocket, File file, boolean upload, byte[] token, TransferCompression compression) {
+        this.serverSocket = serverSocket;
+        this.file = file;
+        this.upload = upload;
+        this.token = token;
+        this.compression = compression;
+    }
+
+    static DataChannelTicket open(File file, boolean upload, TransferCompression compression) throws IOException {
+        ServerSocket serverSocket = createServerSocket();
+        serverSocket.setSoTimeout(TIMEOUT);
+        byte[] token = new byte[TOKEN_LENGTH];
+        RANDOM.nextBytes(token);
+        WORKERS.execute(new DataChannel(serverSocket, file, upload, token, compression));
+        return new DataChannelTicket(getServerHost(), serverSocket.getLocalPort(), token, compression);
+    }
+
+    /**
+     * Listens on the first free port of the configured range, or on any free port when there is none.
+     */
+    private static ServerSocket createServerSocket() throws IOException {
+        RMIServerSocketFactory factory = RMIConfig.getInstance().getServerSocketFactory();
+        int first = RMIConfig.getInstance().getFirstDataChannelPort();
+        int last = RMIConfig.getInstance().getLastDataChannelPort();
+        for (int port = first; port <= last; port++) {
+            try {
+                return factory.createServerSocket(port);
+            } catch (BindException e) {
+                // in use by another data channel
+            }
+        }
+        throw new BindException("No free data channel port from " + first + " to " + last);
+    }
+
+    /**
+     * @return true once a client failed to connect to a data channel. Clients then move files through the remote streams
+     *         until the end of the run, instead of waiting for each data channel to time out.
+     */
+    static boolean isUnreachable() {
+        return unreachable;
+    }
+
+    /**
+     * The host clients reach this server at, as RMI itself announces it in the stubs.
+     */
+    private static String getServerHost() throws IOException {
+        String host = System.getProperty("java.rmi.server.hostname");
+        return host != null ? host : InetAddress.getLocalHost().getHostAddress();
+    }
+
+    @Override
+    public void run() {
+        try {
+            Socket socket = serverSocket.accept();
+            try {
+                socket.setSoTimeout(TIMEOUT);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                byte[] received = new byte[TOKEN_LENGTH];
+                in.readFully(received);
+                if (!MessageDigest.isEqual(token, received)) {
+                    logger.log(Level.WARNING, "Rejected data channel connection with a wrong token from "
+                            + socket.getInetAddress());
+                    return;
+                }
+                if (upload) {
+                    receive(in, file, compression);
+                    socket.getOutputStream().write(0);
+                    socket.getOutputStream().flush();
+                } else {
+                    send(socket, file, compression);
+                }
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Data channel transfer of " + file.getAbsolutePath() + " failed", e);
+        } finally {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    static void download(DataChannelTicket ticket, File file) throws IOException {
+        Socket socket = connect(ticket);
+        try {
+            receive(new DataInputStream(new BufferedInputStream(socket.getInputStream())), file, ticket.getCompression());
+        } finally {
+            socket.close();
+        }
+    }
+
+    static void upload(DataChannelTicket ticket, File file) throws IOException {
+        Socket socket = connect(ticket);
+        try {
+            send(socket, file, ticket.getCompression());
+            if (socket.getInputStream().read() != 0) {
+                throw new IOException("Data channel upload of " + file.getAbsolutePath() + " was not acknowledged");
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static Socket connect(DataChannelTicket ticket) throws IOException {
+        Socket socket;
+        try {
+            socket = createSocket(ticket.getHost(), ticket.getPort());
+        } catch (IOException e) {
+            if (!unreachable) {
+                unreachable = true;
+                logger.log(Level.WARNING, "Could not connect to the data channel at " + ticket.getHost() + ":"
+                        + ticket.getPort() + ", files will be moved through remote streams", e);
+            }
+            throw e;
+        }
+        socket.setSoTimeout(TIMEOUT);
+        socket.getOutputStream().write(ticket.getToken());
+        return socket;
+    }
+
+    private static Socket createSocket(String host, int port) throws IOException {
+        RMIClientSocketFactory factory = RMIConfig.getInstance().getClientSocketFactory();
+        if (factory instanceof SslRmiClientSocketFactory) {
+            return ((SslRmiClientSocketFactory) factory).createSocket(host, port, CONNECT_TIMEOUT);
+        }
+        if (factory == null || factory == RMISocketFactory.getDefaultSocketFactory()) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            return socket;
+        }
+        // other factories connect as they create the socket
+        return factory.createSocket(host, port);
+    }
+
+    private static void send(Socket socket, File file, TransferCompression compression) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            long length = channel.size();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeLong(length);
+            if (compression != TransferCompression.NONE) {
+                sendCompressed(input, length, out, compression);
+                return;
+            }
+            out.flush();
+            WritableByteChannel target =
+                    socket.getChannel() != null ? socket.getChannel() : Channels.newChannel(socket.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                long count = channel.transferTo(position, Math.min(TRANSFER_BLOCK, length - position), target);
+                if (count == 0) {
+                    throw new EOFException(file.getAbsolutePath() + " was truncated while being sent");
+                }
+                position += count;
+            }
+            socket.getOutputStream().flush();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void sendCompressed(InputStream input, long length, DataOutputStream out,
+            TransferCompression compression) throws IOException {
+        ChunkCodec codec = new ChunkCodec(compression, RMIConfig.getInstance().getTransferCompressionLevel());
+        try {
+            byte[] chunk = new byte[RMIConfig.getInstance().getRemoteStreamChunkSize()];
+            long position = 0;
+            while (position < length) {
+                int count = (int) Math.min(chunk.length, length - position);
+                readFully(input, chunk, count);
+                byte[] frame = codec.encode(chunk, 0, count);
+                out.writeInt(frame.length);
+                out.write(frame);
+                position += count;
+            }
+            out.flush();
+        } finally {
+            codec.end();
+        }
+    }
+
+    private static void readFully(InputStream input, byte[] chunk, int length) throws IOException {
+        int count = 0;
+        while (count < length) {
+            int read = input.read(chunk, count, length - count);
+            if (read == -1) {
+                throw new EOFException("File was truncated while being sent");
+            }
+            count += read;
+        }
+    }
+
+    private static void receive(DataInputStream in, File file, TransferCompression compression) throws IOException {
+        long length = in.readLong();
+        if (compression != TransferCompression.NONE) {
+            receiveCompressed(in, length, file, compression);
+            return;
+        }
+        ReadableByteChannel source = Channels.newChannel(in);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel channel = output.getChannel();
+            long position = 0;
+            while (position < length) {
+                long count = channel.transferFrom(source, position, Math.min(TRANSFER_BLOCK, length - position));
+                if (count == 0) {
+                    throw new EOFException("Data channel closed after " + position + " of " + length + " bytes of "
+                            + file.getAbsolutePath());
+                }
+                position += count;
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void receiveCompressed(DataInputStream in, long length, File file, TransferCompression compression)
+            throws IOException {
+        ChunkCodec codec = new ChunkCodec(compression, RMIConfig.getInstance().getTransferCompressionLevel());
+        // the decoded chunks are already written a whole chunk at a time
+        OutputStream output = new FileOutputStream(file);
+        try {
+            long position = 0;
+            while (position < length) {
+                int frameLength = in.readInt();
+                if (frameLength < 0 || frameLength > ChunkCodec.maxFrameLength(RMIConfig.MAX_REMOTE_STREAM_CHUNK)) {
+                    throw new IOException("Invalid data channel frame length " + frameLength);
+                }
+                byte[] frame = new byte[frameLength];
+                in.readFully(frame);
+                byte[] chunk = codec.decode(frame);
+                if (chunk.length == 0 || chunk.length > length - position) {
+                    throw new IOException("Invalid data channel chunk of " + chunk.length + " bytes at " + position
+                            + " of " + length + " bytes of " + file.getAbsolutePath());
+                }
+                output.write(chunk);
+                position += chunk.length;
+            }
+        } finally {
+            codec.end();
+            output.close();
+        }
+    }
+
+}
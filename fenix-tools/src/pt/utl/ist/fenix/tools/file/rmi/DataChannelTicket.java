@@ -0,0 +1,53 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.Serializable;
+
+/**
+ * Where to connect to move the contents of a file through a data channel, and the token to present when connecting. A
+ * ticket is only valid for a single connection.
+ * 
+ * @see IRemoteFile#openDataChannel(boolean)
+ */
+public class DataChannelTicket implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+
+    private final int port;
+
+    private final byte[] token;
+
+    private final TransferCompression compression;
+
+    public DataChannelTicket(String host, int port, byte[] token) {
+        this(host, port, token, TransferCompression.NONE);
+    }
+
+    public DataChannelTicket(String host, int port, byte[] token, TransferCompression compression) {
+        this.host = host;
+        this.port = port;
+        this.token = token;
+        this.compression = compression;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public byte[] getToken() {
+        return token;
+    }
+
+    /**
+     * @return the compression of the contents, never null
+     */
+    public TransferCompression getCompression() {
+        return compression != null ? compression : TransferCompression.NONE;
+    }
+
+}
@@ -0,0 +1,388 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import pt.utl.ist.fenix.tools.file.FileSet;
+import pt.utl.ist.fenix.tools.file.utils.FileUtils;
+
+/**
+ * Copies all the files of a {@link FileSet} tree to or from a remote directory, several at a time. Each worker thread moves
+ * one file at a time through {@link FileTransfer}, on its own handle of the remote directory, see
+ * {@link IRemoteFile#newHandle()}.
+ *
+ * A file that fails is tried again up to {@link #getAttempts()} times, and the files that still fail are reported together
+ * in a {@link FileSetTransferException} once the others were moved. The file set is only changed to point to the moved
+ * files when every file was moved, so running the same transfer again with the same arguments only moves the files that
+ * failed or were not reached before a {@link #cancel()}.
+ */
+public class FileSetTransfer {
+
+    /**
+     * Notified from the worker threads as each file is moved.
+     */
+    public interface Listener {
+
+        public void fileStarted(String relativePath);
+
+        public void fileCompleted(String relativePath, long bytes, long millis);
+
+        /**
+         * Called on each failed attempt. There is no retry after the attempt number {@link FileSetTransfer#getAttempts()}.
+         */
+        public void fileFailed(String relativePath, int attempt, IOException cause);
+
+    }
+
+    private static final Logger logger = Logger.getLogger(FileSetTransfer.class.getName());
+
+    private static final AtomicInteger transferCounter = new AtomicInteger();
+
+    private final int parallelism;
+
+    private int attempts = 3;
+
+    private Listener listener = null;
+
+    /**
+     * The files already moved, by relative path, with the absolute path that replaces them in the file set
+     */
+    private final ConcurrentMap<String, String> completed = new ConcurrentHashMap<String, String>();
+
+    private volatile boolean cancelled = false;
+
+    private volatile ExecutorService executor = null;
+
+    private final AtomicInteger transferredFiles = new AtomicInteger();
+
+    private final AtomicLong transferredBytes = new AtomicLong();
+
+    private volatile long startTime = 0;
+
+    private volatile long endTime = 0;
+
+    public FileSetTransfer() {
+        this(RMIConfig.getInstance().getFileSetTransferThreads());
+    }
+
+    public FileSetTransfer(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @param attempts
+     *            how many times each file is tried before it is reported as failed, at least one
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = Math.max(1, attempts);
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Copies the files of the file set, relative to the local base directory, into the remote directory, and replaces them
+     * in the file set by the remote files.
+     */
+    public void upload(String localBaseDir, IRemoteFile remoteDir, FileSet fileSet) throws IOException {
+        run(fileSet, localBaseDir, remoteDir, null);
+    }
+
+    /**
+     * Copies the remote files of the file set, relative to the remote base directory, into the local base directory, and
+     * replaces them in the file set by the local files.
+     */
+    public void download(IRemoteFile remoteBaseDir, String remoteBaseDirAbsolutePath, File localBaseDir, FileSet fileSet)
+            throws IOException {
+        run(fileSet, remoteBaseDirAbsolutePath, remoteBaseDir, localBaseDir);
+    }
+
+    /**
+     * Stops the running transfer: no more files are started, and the ones being moved are interrupted. The transfer then
+     * fails with an {@link InterruptedIOException}, and can be run again to move the remaining files.
+     */
+    public void cancel() {
+        cancelled = true;
+        ExecutorService current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of files moved by the last run
+     */
+    public int getTransferredFiles() {
+        return transferredFiles.get();
+    }
+
+    /**
+     * @return the number of bytes moved by the last run
+     */
+    public long getTransferredBytes() {
+        return transferredBytes.get();
+    }
+
+    /**
+     * @return the duration of the last run, or of the current one so far
+     */
+    public long getElapsedMillis() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * @return the aggregate throughput of the last run, or of the current one so far
+     */
+    public long getBytesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? transferredBytes.get() * 1000 / elapsed : 0;
+    }
+
+    /**
+     * @param localBaseDir
+     *            null for uploads
+     */
+    private void run(FileSet fileSet, String baseDir, IRemoteFile remoteDir, File localBaseDir) throws IOException {
+        cancelled = false;
+        transferredFiles.set(0);
+        transferredBytes.set(0);
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+
+        // relative path of each file, by its absolute path in the file set
+        Map<String, String> relativePaths = new LinkedHashMap<String, String>();
+        Map<String, File> files = new HashMap<String, File>();
+        collect(fileSet, baseDir, relativePaths, files);
+        Set<String> pending = new LinkedHashSet<String>(relativePaths.values());
+        pending.removeAll(completed.keySet());
+
+        Map<String, IOException> failures = new ConcurrentHashMap<String, IOException>();
+        try {
+            if (!pending.isEmpty()) {
+                transfer(new ConcurrentLinkedQueue<String>(pending), files, remoteDir, localBaseDir, failures);
+            }
+        } finally {
+            endTime = System.currentTimeMillis();
+        }
+        if (cancelled) {
+            throw new InterruptedIOException("File set transfer was cancelled");
+        }
+        if (!failures.isEmpty()) {
+            throw new FileSetTransferException(new TreeMap<String, IOException>(failures));
+        }
+
+        for (Entry<String, String> relativePath : relativePaths.entrySet()) {
+            fileSet.replaceFileWithAbsolutePath(relativePath.getKey(), completed.get(relativePath.getValue()));
+        }
+        completed.clear();
+    }
+
+    private static void collect(FileSet fileSet, String baseDir, Map<String, String> relativePaths, Map<String, File> files) {
+        for (File f : fileSet.getAllFiles()) {
+            String relativePath = FileUtils.makeRelativePath(baseDir, f.getAbsolutePath());
+            relativePaths.put(f.getAbsolutePath(), relativePath);
+            files.put(relativePath, f);
+        }
+        for (FileSet childSet : fileSet.getChildSets()) {
+            collect(childSet, baseDir, relativePaths, files);
+        }
+    }
+
+    private void transfer(Queue<String> queue, Map<String, File> files, IRemoteFile remoteDir, File localBaseDir,
+            Map<String, IOException> failures) {
+        List<IRemoteFile> handles = openHandles(remoteDir, Math.min(parallelism, queue.size()));
+        ExecutorService workers = Executors.newFixedThreadPool(handles.size(), new TransferThreadFactory());
+        executor = workers;
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(handles.size());
+            for (IRemoteFile handle : handles) {
+                futures.add(workers.submit(new Worker(handle, queue, files, localBaseDir, failures)));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            // cancelled before all the workers were started
+        } finally {
+            workers.shutdownNow();
+            executor = null;
+            releaseHandles(remoteDir, handles);
+        }
+    }
+
+    /**
+     * One handle per worker. Servers that can't give out new handles are used through the given one, one file at a time.
+     */
+    private static List<IRemoteFile> openHandles(IRemoteFile remoteDir, int count) {
+        List<IRemoteFile> handles = new ArrayList<IRemoteFile>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                handles.add(remoteDir.newHandle());
+            }
+        } catch (RemoteException e) {
+            if (handles.isEmpty()) {
+                logger.log(Level.INFO, "Remote directory gives out no new handles, moving one file at a time", e);
+                handles.add(remoteDir);
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * Unexports the handles given to the workers, so that they don't stay exported on the server until they are collected.
+     */
+    private static void releaseHandles(IRemoteFile remoteDir, List<IRemoteFile> handles) {
+        for (IRemoteFile handle : handles) {
+            if (handle == remoteDir) {
+                continue;
+            }
+            try {
+                handle.release();
+            } catch (RemoteException e) {
+                logger.log(Level.FINE, "Could not release a remote directory handle", e);
+            }
+        }
+    }
+
+    private class Worker implements Callable<Void> {
+
+        private final IRemoteFile handle;
+
+        private final Queue<String> queue;
+
+        private final Map<String, File> files;
+
+        private final File localBaseDir;
+
+        private final Map<String, IOException> failures;
+
+        private Worker(IRemoteFile handle, Queue<String> queue, Map<String, File> files, File localBaseDir,
+                Map<String, IOException> failures) {
+            this.handle = handle;
+            this.queue = queue;
+            this.files = files;
+            this.localBaseDir = localBaseDir;
+            this.failures = failures;
+        }
+
+        @Override
+        public Void call() {
+            String relativePath;
+            while (!cancelled && (relativePath = queue.poll()) != null) {
+                transfer(relativePath);
+            }
+            return null;
+        }
+
+        private void transfer(String relativePath) {
+            for (int attempt = 1; !cancelled; attempt++) {
+                if (listener != null) {
+                    listener.fileStarted(relativePath);
+                }
+                long start = System.currentTimeMillis();
+                try {
+                    File localFile;
+                    String replacement;
+                    if (localBaseDir == null) {
+                        localFile = files.get(relativePath);
+                        handle.createFile(relativePath);
+                        FileTransfer.upload(localFile, handle);
+                        replacement = handle.getAbsolutePath();
+                    } else {
+                        localFile = new File(localBaseDir, relativePath);
+                        localFile.getParentFile().mkdirs();
+                        handle.getFile(relativePath);
+                        FileTransfer.download(handle, localFile);
+                        replacement = localFile.getAbsolutePath();
+                    }
+                    long bytes = localFile.length();
+                    completed.put(relativePath, replacement);
+                    transferredFiles.incrementAndGet();
+                    transferredBytes.addAndGet(bytes);
+                    if (listener != null) {
+                        listener.fileCompleted(relativePath, bytes, System.currentTimeMillis() - start);
+                    }
+                    return;
+                } catch (IOException e) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (listener != null) {
+                        listener.fileFailed(relativePath, attempt, e);
+                    }
+                    if (attempt >= attempts) {
+                        failures.put(relativePath, e);
+                        return;
+                    }
+                    logger.log(Level.FINE, "Transfer of " + relativePath + " failed, retrying", e);
+                }
+            }
+        }
+
+    }
+
+    private static class TransferThreadFactory implements ThreadFactory {
+
+        private final int transferNumber = transferCounter.incrementAndGet();
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RemoteFileSetTransfer-" + transferNumber + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
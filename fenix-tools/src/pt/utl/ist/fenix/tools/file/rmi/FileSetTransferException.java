@@ -0,0 +1,32 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown when some files of a {@link FileSetTransfer} could not be moved after all their attempts. The other files were
+ * moved, and running the same transfer again only moves the ones that failed.
+ */
+public class FileSetTransferException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, IOException> failures;
+
+    public FileSetTransferException(Map<String, IOException> failures) {
+        super(failures.size() + " files failed to transfer: " + failures.keySet());
+        this.failures = Collections.unmodifiableMap(failures);
+        if (!failures.isEmpty()) {
+            initCause(failures.values().iterator().next());
+        }
+    }
+
+    /**
+     * @return the last failure of each file that could not be moved, by its path relative to the base directories
+     */
+    public Map<String, IOException> getFailures() {
+        return failures;
+    }
+
+}
@@ -0,0 +1,182 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import pt.utl.ist.fenix.tools.file.utils.FileUtils;
+
+/**
+ * Copies files to and from an {@link IRemoteFile}, through the most direct path allowed by
+ * {@link RMIConfig#getFileTransferMode()} that is available.
+ *
+ * @see FileTransferMode
+ */
+public class FileTransfer {
+
+    private static final Logger logger = Logger.getLogger(FileTransfer.class.getName());
+
+    private static final long TRANSFER_BLOCK = 8 * 1024 * 1024;
+
+    private static final int PROBE_LENGTH = 16;
+
+    private static final Random RANDOM = new SecureRandom();
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Copies the current file of the remote handle into the local file.
+     */
+    public static void download(IRemoteFile remoteFile, File localFile) throws IOException {
+        FileTransferMode mode = RMIConfig.getInstance().getFileTransferMode();
+        if (mode != FileTransferMode.STREAM) {
+            File sharedFile = findSharedFile(remoteFile);
+            if (sharedFile != null) {
+                copy(sharedFile, localFile);
+                return;
+            }
+        }
+        if (mode == FileTransferMode.DATA_CHANNEL && !DataChannel.isUnreachable()) {
+            try {
+                DataChannel.download(remoteFile.openDataChannel(false, TransferCompression.offer()), localFile);
+                return;
+            } catch (IOException e) {
+                logger.log(Level.INFO, "Data channel download failed, falling back to remote streams", e);
+            }
+        }
+        InputStream input = new RemoteFileInputStream(remoteFile);
+        try {
+            OutputStream output = new FileOutputStream(localFile);
+            try {
+                FileUtils.copyInputStreamToOutputStream(input, output);
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Copies the local file into the current file of the remote handle, which must already exist, see
+     * {@link IRemoteFile#createFile(String)}.
+     */
+    public static void upload(File localFile, IRemoteFile remoteFile) throws IOException {
+        FileTransferMode mode = RMIConfig.getInstance().getFileTransferMode();
+        if (mode != FileTransferMode.STREAM) {
+            File sharedFile = probeSharedFile(remoteFile);
+            if (sharedFile != null) {
+                copy(localFile, sharedFile);
+                return;
+            }
+        }
+        if (mode == FileTransferMode.DATA_CHANNEL && !DataChannel.isUnreachable()) {
+            try {
+                DataChannel.upload(remoteFile.openDataChannel(true, TransferCompression.offer()), localFile);
+                return;
+            } catch (IOException e) {
+                logger.log(Level.INFO, "Data channel upload failed, falling back to remote streams", e);
+            }
+        }
+        OutputStream output = new RemoteFileOutputStream(remoteFile);
+        try {
+            InputStream input = new FileInputStream(localFile);
+            try {
+                FileUtils.copyInputStreamToOutputStream(input, output);
+            } finally {
+                input.close();
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * The remote file, if the same path is visible here. Another host may well have an unrelated file at the same path, so
+     * a marker with random contents is written next to it here, and the server must find it next to its file.
+     */
+    private static File findSharedFile(IRemoteFile remoteFile) throws IOException {
+        File file = new File(remoteFile.getAbsolutePath());
+        File dir = file.getParentFile();
+        if (!file.isFile() || !file.canRead() || dir == null || !dir.canWrite() || file.length() != remoteFile.length()) {
+            return null;
+        }
+        byte[] token = new byte[PROBE_LENGTH];
+        RANDOM.nextBytes(token);
+        File marker;
+        try {
+            marker = File.createTempFile(".transfer-probe", null, dir);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            OutputStream output = new FileOutputStream(marker);
+            try {
+                output.write(token);
+            } finally {
+                output.close();
+            }
+            return remoteFile.matchesProbe(marker.getName(), token) ? file : null;
+        } catch (IOException e) {
+            // servers that can't check probes, or a marker that could not be written
+            return null;
+        } finally {
+            marker.delete();
+        }
+    }
+
+    /**
+     * The remote file, if the same path is visible and writable here. As a newly created file can't be told apart by its
+     * length, the server is asked to set a random modification time that must then be seen here.
+     */
+    private static File probeSharedFile(IRemoteFile remoteFile) throws IOException {
+        File file = new File(remoteFile.getAbsolutePath());
+        if (!file.isFile() || !file.canWrite()) {
+            return null;
+        }
+        // whole seconds, as many file systems keep nothing finer
+        long probe = (System.currentTimeMillis() / 1000 - 1 - RANDOM.nextInt(1 << 20)) * 1000;
+        if (remoteFile.setLastModified(probe) && file.lastModified() == probe) {
+            return file;
+        }
+        return null;
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        if (source.getCanonicalFile().equals(target.getCanonicalFile())) {
+            return;
+        }
+        FileInputStream input = new FileInputStream(source);
+        try {
+            FileOutputStream output = new FileOutputStream(target);
+            try {
+                FileChannel from = input.getChannel();
+                FileChannel to = output.getChannel();
+                long length = from.size();
+                long position = 0;
+                while (position < length) {
+                    long count = from.transferTo(position, Math.min(TRANSFER_BLOCK, length - position), to);
+                    if (count == 0) {
+                        throw new EOFException(source.getAbsolutePath() + " was truncated while being copied");
+                    }
+                    position += count;
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+}
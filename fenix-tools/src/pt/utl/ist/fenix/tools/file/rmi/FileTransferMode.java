@@ -0,0 +1,20 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+/**
+ * How {@link FileTransfer} moves file contents between an RMI client and server. Whatever the mode, files go through the
+ * remote streams when the faster paths are not available.
+ * <ul>
+ * <li>DIRECT: when the server file is visible from the client, on the same host or a shared volume, the contents are copied
+ * locally with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. A
+ * download trusts the path only once the server found a marker written next to it by the client, and an upload once the
+ * client saw a modification time set by the server.</li>
+ * <li>DATA_CHANNEL: as DIRECT, and otherwise the contents go through a dedicated socket, negotiated through RMI and created
+ * by the same socket factories, so over SSL when RMI is. The contents are copied through the socket streams, not
+ * marshalled, and the server listens on {@link RMIConfig#DATA_CHANNEL_PORTS_PARAM}, which must be reachable from the
+ * clients.</li>
+ * <li>STREAM: the contents always go through {@link RemoteFileInputStream} and {@link RemoteFileOutputStream}.</li>
+ * </ul>
+ */
+public enum FileTransferMode {
+    DIRECT, DATA_CHANNEL, STREAM;
+}
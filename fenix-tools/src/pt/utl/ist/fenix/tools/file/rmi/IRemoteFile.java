@@ -46,6 +46,43 @@ public interface IRemoteFile extends Remote {
 
     public IRemoteInputStream getInputStream() throws RemoteException;
 
+    /**
+     * Opens a single use socket to download or upload the contents of the current file without going through RMI.
+     * 
+     * @see FileTransfer
+     */
+    public DataChannelTicket openDataChannel(boolean upload) throws RemoteException;
+
+    /**
+     * Same as {@link #openDataChannel(boolean)}, compressing the contents with the first of the given
+     * {@link TransferCompression}s the server also uses, which is named in the ticket.
+     * 
+     * @param compressions The names of the compressions the client accepts, in its order of preference
+     */
+    public DataChannelTicket openDataChannel(boolean upload, String[] compressions) throws RemoteException;
+
+    /**
+     * Exports a new handle on the same root directory, positioned at the root. Since {@link #createFile(String)} and
+     * {@link #getFile(String)} move the handle they are called on, files are moved concurrently through one handle each.
+     * 
+     * @see FileSetTransfer
+     */
+    public IRemoteFile newHandle() throws RemoteException;
+
+    /**
+     * Unexports a handle given by {@link #newHandle()}, which can't be used afterwards, instead of leaving it to the
+     * distributed garbage collection. Does nothing on other handles.
+     */
+    public void release() throws RemoteException;
+
+    /**
+     * Tells whether the directory of the current file holds a file of the given name with exactly the given contents. A
+     * client that wrote that file next to its own copy of the path knows the path is shared with the server.
+     * 
+     * @see FileTransfer
+     */
+    public boolean matchesProbe(String name, byte[] contents) throws RemoteException;
+
     public String[] list() throws RemoteException;
 
     public String[] list(SerializableFilenameFilter filter) throws RemoteException;
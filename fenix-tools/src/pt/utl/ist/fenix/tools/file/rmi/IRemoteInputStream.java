@@ -7,6 +7,33 @@ public interface IRemoteInputStream extends Remote {
 
     public int read() throws RemoteException;
 
+    /**
+     * Reads a block of bytes in a single call. Unlike {@link java.io.InputStream#read(byte[], int, int)} the block is only
+     * shorter than asked at the end of the stream.
+     * 
+     * @param length The maximum number of bytes to read, limited by the server to {@link RMIConfig#MAX_REMOTE_STREAM_CHUNK}
+     * @return The bytes read, or null at the end of the stream
+     * @throws RemoteException If a comm exception or an underlying IOException occurs
+     */
+    public byte[] read(int length) throws RemoteException;
+
+    /**
+     * @return The number of bytes the server prefers to move in each call to {@link #read(int)}
+     * @throws RemoteException
+     */
+    public int getChunkSize() throws RemoteException;
+
+    /**
+     * Chooses the compression of the blocks returned by {@link #read(int)}, which must be called before reading. Once a
+     * compression other than NONE is chosen each block is a frame to decode, see {@link TransferCompression}, and the length
+     * asked for is that of the decoded block.
+     * 
+     * @param accepted The names of the {@link TransferCompression}s the client accepts, in its order of preference
+     * @return The name of the compression chosen by the server
+     * @throws RemoteException
+     */
+    public String negotiateCompression(String[] accepted) throws RemoteException;
+
     public int available() throws RemoteException;
 
     public void close() throws RemoteException;
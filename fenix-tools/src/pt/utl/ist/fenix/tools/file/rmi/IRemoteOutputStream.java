@@ -54,4 +54,24 @@ public interface IRemoteOutputStream extends Remote {
      */
     public void write(byte[] b) throws RemoteException;
 
+    /**
+     * Clients should buffer their writes and send blocks of this size through {@link #write(byte[])}. Note that
+     * {@link #write(byte[], int, int)} marshals the whole array, not only the bytes written.
+     * 
+     * @return The number of bytes the server prefers to receive in each call
+     * @throws RemoteException
+     */
+    public int getChunkSize() throws RemoteException;
+
+    /**
+     * Chooses the compression of the blocks sent through {@link #write(byte[])}, which must be called before writing. Once a
+     * compression other than NONE is chosen each block must be an encoded frame, see {@link TransferCompression}, while the
+     * other write methods still take plain bytes.
+     * 
+     * @param accepted The names of the {@link TransferCompression}s the client accepts, in its order of preference
+     * @return The name of the compression chosen by the server
+     * @throws RemoteException
+     */
+    public String negotiateCompression(String[] accepted) throws RemoteException;
+
 }
@@ -0,0 +1,181 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 block compressor, trading ratio for speed. The block is a sequence of literal runs each followed by a match
+ * into the previous 64KB, in the same layout as LZ4 blocks:
+ * <ul>
+ * <li>a token byte, with the literal length in the high four bits and the match length minus four in the low four bits,
+ * either being 15 when followed by extra length bytes, each 255 when followed by yet another;</li>
+ * <li>the literals;</li>
+ * <li>the match offset, as two little endian bytes;</li>
+ * <li>the extra match length bytes.</li>
+ * </ul>
+ * The last sequence only holds literals. Matches are found through a hash table of the previous positions of each four byte
+ * sequence, without searching any further.
+ */
+class LzCodec {
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int MAX_OFFSET = 65535;
+
+    private static final int HASH_BITS = 14;
+
+    private final int[] table = new int[1 << HASH_BITS];
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @return the number of bytes written to the target, which must have room for {@link #maxCompressedLength(int)}
+     */
+    int compress(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int findLimit = end - MATCH_FIND_LIMIT;
+        int anchor = offset;
+        int position = offset;
+        int out = targetOffset;
+        Arrays.fill(table, -1);
+
+        int misses = 0;
+        while (position < findLimit) {
+            int sequence = readInt(source, position);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int candidate = table[hash];
+            table[hash] = position;
+            if (candidate < 0 || position - candidate > MAX_OFFSET || readInt(source, candidate) != sequence) {
+                // skip faster through data that doesn't compress
+                position += 1 + (misses++ >>> 6);
+                continue;
+            }
+            misses = 0;
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit && source[candidate + matchLength] == source[position + matchLength]) {
+                matchLength++;
+            }
+            out = writeSequence(source, anchor, position - anchor, position - candidate, matchLength, target, out);
+            position += matchLength;
+            anchor = position;
+        }
+
+        int literals = end - anchor;
+        int token = Math.min(literals, 15) << 4;
+        target[out++] = (byte) token;
+        out = writeLength(literals - 15, target, out);
+        System.arraycopy(source, anchor, target, out, literals);
+        return out + literals;
+    }
+
+    private static int writeSequence(byte[] source, int literalStart, int literals, int matchOffset, int matchLength,
+            byte[] target, int out) {
+        int extraMatch = matchLength - MIN_MATCH;
+        target[out++] = (byte) ((Math.min(literals, 15) << 4) | Math.min(extraMatch, 15));
+        out = writeLength(literals - 15, target, out);
+        System.arraycopy(source, literalStart, target, out, literals);
+        out += literals;
+        target[out++] = (byte) matchOffset;
+        target[out++] = (byte) (matchOffset >>> 8);
+        return writeLength(extraMatch - 15, target, out);
+    }
+
+    private static int writeLength(int remaining, byte[] target, int out) {
+        if (remaining < 0) {
+            return out;
+        }
+        while (remaining >= 255) {
+            target[out++] = (byte) 255;
+            remaining -= 255;
+        }
+        target[out++] = (byte) remaining;
+        return out;
+    }
+
+    private static int readInt(byte[] source, int position) {
+        return (source[position] & 0xff) | (source[position + 1] & 0xff) << 8 | (source[position + 2] & 0xff) << 16
+                | (source[position + 3] & 0xff) << 24;
+    }
+
+    /**
+     * Decompresses a whole block into exactly the given number of bytes.
+     *
+     * @throws IOException if the block is corrupt or doesn't have the expected length
+     */
+    static void decompress(byte[] source, int offset, int length, byte[] target, int targetOffset, int targetLength)
+            throws IOException {
+        int end = offset + length;
+        int targetEnd = targetOffset + targetLength;
+        int in = offset;
+        int out = targetOffset;
+        while (in < end) {
+            int token = source[in++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int extra;
+                do {
+                    if (in >= end) {
+                        throw corrupt();
+                    }
+                    extra = source[in++] & 0xff;
+                    literals += extra;
+                } while (extra == 255);
+            }
+            if (literals > end - in || literals > targetEnd - out) {
+                throw corrupt();
+            }
+            System.arraycopy(source, in, target, out, literals);
+            in += literals;
+            out += literals;
+            if (in == end) {
+                break;
+            }
+
+            if (end - in < 2) {
+                throw corrupt();
+            }
+            int matchOffset = (source[in] & 0xff) | (source[in + 1] & 0xff) << 8;
+            in += 2;
+            int matchLength = token & 0x0f;
+            if (matchLength == 15) {
+                int extra;
+                do {
+                    if (in >= end) {
+                        throw corrupt();
+                    }
+                    extra = source[in++] & 0xff;
+                    matchLength += extra;
+                } while (extra == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (matchOffset == 0 || matchOffset > out - targetOffset || matchLength > targetEnd - out) {
+                throw corrupt();
+            }
+            int from = out - matchOffset;
+            if (matchOffset >= matchLength) {
+                System.arraycopy(target, from, target, out, matchLength);
+                out += matchLength;
+            } else {
+                // overlapping, the match repeats bytes it is copying
+                for (int i = 0; i < matchLength; i++) {
+                    target[out++] = target[from++];
+                }
+            }
+        }
+        if (out != targetEnd) {
+            throw corrupt();
+        }
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt LZ compressed block");
+    }
+
+}
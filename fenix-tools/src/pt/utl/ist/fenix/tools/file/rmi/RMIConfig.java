@@ -23,7 +23,13 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.zip.Deflater;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -103,6 +109,46 @@ public class RMIConfig {
 
     public static final String REMOTE_STREAM_BUFFER_BLOCK_PARAM = "rmi.stream.bytes.block";
 
+    /**
+     * Servlet init parameter name The parameter that configures the number of bytes moved by each remote stream call. The
+     * server chooses it and the clients buffer and prefetch whole chunks
+     */
+    public static final String REMOTE_STREAM_CHUNK_PARAM = "rmi.stream.chunk.bytes";
+
+    /**
+     * Servlet init parameter name The parameter that identifies the most direct {@link FileTransferMode} file transfers may
+     * use
+     */
+    public static final String FILE_TRANSFER_MODE_PARAM = "rmi.transfer.mode";
+
+    /**
+     * Servlet init parameter name The parameter that identifies the port, or the range of ports as first-last, the server
+     * listens on for data channels, so that they can be opened in a firewall like the RMI ports
+     */
+    public static final String DATA_CHANNEL_PORTS_PARAM = "rmi.transfer.datachannel.ports";
+
+    /**
+     * Servlet init parameter name The parameter that lists the {@link TransferCompression}s to use, comma separated, in order
+     * of preference. Clients offer them all, servers pick the first one offered
+     */
+    public static final String TRANSFER_COMPRESSION_PARAM = "rmi.transfer.compression";
+
+    /**
+     * Servlet init parameter name The parameter that configures the deflate level, from 1 (fastest) to 9 (smallest)
+     */
+    public static final String TRANSFER_COMPRESSION_LEVEL_PARAM = "rmi.transfer.compression.level";
+
+    /**
+     * Servlet init parameter name The parameter that lists the extensions, comma separated, of the files that are not
+     * compressed because their contents already are
+     */
+    public static final String TRANSFER_COMPRESSION_SKIP_PARAM = "rmi.transfer.compression.skip";
+
+    /**
+     * Servlet init parameter name The parameter that identifies how many files of a file set are moved at the same time
+     */
+    public static final String FILE_SET_TRANSFER_THREADS_PARAM = "rmi.transfer.threads";
+
     /**
      * By default the servlet will start an rmi registry
      */
@@ -154,6 +200,45 @@ public class RMIConfig {
 
     public static final int DEFAULT_REMOTE_STREAM_BUFFER_BLOCK_PARAM = 512;
 
+    /**
+     * By default remote streams move 256KB per call
+     */
+    public static final int DEFAULT_REMOTE_STREAM_CHUNK_PARAM = 256 * 1024;
+
+    /**
+     * Remote streams never move more than 8MB in a single call, whatever the configuration or the client asks for
+     */
+    public static final int MAX_REMOTE_STREAM_CHUNK = 8 * 1024 * 1024;
+
+    /**
+     * By default files are copied directly when the server file is visible, and through the remote streams otherwise. Data
+     * channels need their own ports and are only used when asked for
+     */
+    public static final FileTransferMode DEFAULT_FILE_TRANSFER_MODE = FileTransferMode.DIRECT;
+
+    /**
+     * By default data channels listen on any free port
+     */
+    public static final String DEFAULT_DATA_CHANNEL_PORTS_PARAM = "0";
+
+    /**
+     * By default transfers prefer the fast LZ compression, and accept deflate
+     */
+    public static final String DEFAULT_TRANSFER_COMPRESSION_PARAM = "LZ,DEFLATE";
+
+    public static final int DEFAULT_TRANSFER_COMPRESSION_LEVEL_PARAM = Deflater.BEST_SPEED;
+
+    /**
+     * By default four files of a file set are moved at the same time
+     */
+    public static final int DEFAULT_FILE_SET_TRANSFER_THREADS_PARAM = 4;
+
+    /**
+     * By default archives, images, audio, video, PDFs and office documents, which are zip files, are not compressed
+     */
+    public static final String DEFAULT_TRANSFER_COMPRESSION_SKIP_PARAM =
+            "zip,jar,war,ear,gz,tgz,bz2,xz,7z,rar,png,jpg,jpeg,gif,mp3,ogg,mp4,m4a,avi,mov,mkv,flv,swf,pdf,docx,xlsx,pptx,odt,ods,odp";
+
     // hide the constructor to enable the singleton pattern
     private RMIConfig() {
 
@@ -184,6 +269,22 @@ public class RMIConfig {
 
     private boolean startRMIRegistry = DEFAULT_START_RMI_REGISTRY_PARAM;
 
+    private int remoteStreamChunkSize = DEFAULT_REMOTE_STREAM_CHUNK_PARAM;
+
+    private FileTransferMode fileTransferMode = DEFAULT_FILE_TRANSFER_MODE;
+
+    private int firstDataChannelPort = 0;
+
+    private int lastDataChannelPort = 0;
+
+    private List<TransferCompression> transferCompressions = parseTransferCompressions(DEFAULT_TRANSFER_COMPRESSION_PARAM);
+
+    private int transferCompressionLevel = DEFAULT_TRANSFER_COMPRESSION_LEVEL_PARAM;
+
+    private Set<String> uncompressedExtensions = parseExtensions(DEFAULT_TRANSFER_COMPRESSION_SKIP_PARAM);
+
+    private int fileSetTransferThreads = DEFAULT_FILE_SET_TRANSFER_THREADS_PARAM;
+
     /**
      * @return the startRMIRegistry
      */
@@ -506,4 +607,150 @@ public class RMIConfig {
         this.sslTrustStorePass = sslTrustStorePass;
     }
 
+    /**
+     * @return the number of bytes moved by each remote stream call
+     */
+    public int getRemoteStreamChunkSize() {
+        return remoteStreamChunkSize;
+    }
+
+    /**
+     * @param remoteStreamChunkSize
+     *            the remoteStreamChunkSize to set, limited to {@link #MAX_REMOTE_STREAM_CHUNK}
+     */
+    public void setRemoteStreamChunkSize(int remoteStreamChunkSize) {
+        if (remoteStreamChunkSize <= 0) {
+            throw new IllegalArgumentException("Remote stream chunk size must be positive: " + remoteStreamChunkSize);
+        }
+        this.remoteStreamChunkSize = Math.min(remoteStreamChunkSize, MAX_REMOTE_STREAM_CHUNK);
+    }
+
+    /**
+     * @return the most direct mode file transfers may use
+     */
+    public FileTransferMode getFileTransferMode() {
+        return fileTransferMode;
+    }
+
+    /**
+     * @param fileTransferMode
+     *            the fileTransferMode to set
+     */
+    public void setFileTransferMode(FileTransferMode fileTransferMode) {
+        this.fileTransferMode = fileTransferMode;
+    }
+
+    /**
+     * @return the first port data channels may listen on, 0 for any free port
+     */
+    public int getFirstDataChannelPort() {
+        return firstDataChannelPort;
+    }
+
+    /**
+     * @return the last port data channels may listen on, 0 for any free port
+     */
+    public int getLastDataChannelPort() {
+        return lastDataChannelPort;
+    }
+
+    /**
+     * @param dataChannelPorts
+     *            a port, or a range of ports as first-last, data channels listen on. 0 for any free port
+     */
+    public void setDataChannelPorts(String dataChannelPorts) {
+        String[] range = dataChannelPorts.trim().split("\\s*-\\s*");
+        if (range.length < 1 || range.length > 2) {
+            throw new IllegalArgumentException("Invalid data channel ports: " + dataChannelPorts);
+        }
+        int first = Integer.parseInt(range[0]);
+        int last = range.length == 2 ? Integer.parseInt(range[1]) : first;
+        if (first < 0 || last < first || last > 65535 || (first == 0 && last != 0)) {
+            throw new IllegalArgumentException("Invalid data channel ports: " + dataChannelPorts);
+        }
+        this.firstDataChannelPort = first;
+        this.lastDataChannelPort = last;
+    }
+
+    /**
+     * @return the number of files of a file set moved at the same time
+     */
+    public int getFileSetTransferThreads() {
+        return fileSetTransferThreads;
+    }
+
+    /**
+     * @param fileSetTransferThreads
+     *            the number of files of a file set moved at the same time, at least one
+     */
+    public void setFileSetTransferThreads(int fileSetTransferThreads) {
+        this.fileSetTransferThreads = Math.max(1, fileSetTransferThreads);
+    }
+
+    /**
+     * @return the compressions used in file transfers, in order of preference
+     */
+    public List<TransferCompression> getTransferCompressions() {
+        return transferCompressions;
+    }
+
+    /**
+     * @param transferCompressions
+     *            comma separated {@link TransferCompression} names, in order of preference
+     */
+    public void setTransferCompressions(String transferCompressions) {
+        this.transferCompressions = parseTransferCompressions(transferCompressions);
+    }
+
+    private static List<TransferCompression> parseTransferCompressions(String names) {
+        List<TransferCompression> compressions = new ArrayList<TransferCompression>();
+        for (String name : names.split(",")) {
+            if (name.trim().length() > 0) {
+                compressions.add(TransferCompression.valueOf(name.trim().toUpperCase()));
+            }
+        }
+        return Collections.unmodifiableList(compressions);
+    }
+
+    /**
+     * @return the deflate level
+     */
+    public int getTransferCompressionLevel() {
+        return transferCompressionLevel;
+    }
+
+    /**
+     * @param transferCompressionLevel
+     *            the deflate level, from 1 (fastest) to 9 (smallest)
+     */
+    public void setTransferCompressionLevel(int transferCompressionLevel) {
+        this.transferCompressionLevel = transferCompressionLevel;
+    }
+
+    /**
+     * @param uncompressedExtensions
+     *            comma separated extensions of the files not to compress
+     */
+    public void setUncompressedExtensions(String uncompressedExtensions) {
+        this.uncompressedExtensions = parseExtensions(uncompressedExtensions);
+    }
+
+    private static Set<String> parseExtensions(String extensions) {
+        Set<String> result = new HashSet<String>();
+        for (String extension : extensions.split(",")) {
+            if (extension.trim().length() > 0) {
+                result.add(extension.trim().toLowerCase());
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * @return false if the extension of the file name is one of the ones not to compress
+     */
+    public boolean isCompressible(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 || !uncompressedExtensions.contains(fileName.substring(dot + 1).toLowerCase());
+    }
+
 }
@@ -1,14 +1,22 @@
 package pt.utl.ist.fenix.tools.file.rmi;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 
 public class RemoteFileImpl implements IRemoteFile {
 
     public File rootFile = null;
     public File delegate = null;
 
+    /**
+     * Whether this handle was given by {@link #newHandle()}, and so may be unexported by {@link #release()}
+     */
+    private boolean newHandle = false;
+
     public RemoteFileImpl(File rootFile) throws RemoteException {
         this.delegate = rootFile;
         this.rootFile = rootFile;
@@ -160,6 +168,61 @@ public class RemoteFileImpl implements IRemoteFile {
         return (IRemoteInputStream) RMIConfig.getInstance().exportObject(streamIn);
     }
 
+    @Override
+    public DataChannelTicket openDataChannel(boolean upload) throws RemoteException {
+        try {
+            return DataChannel.open(this.delegate, upload, TransferCompression.NONE);
+        } catch (IOException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public DataChannelTicket openDataChannel(boolean upload, String[] compressions) throws RemoteException {
+        try {
+            return DataChannel.open(this.delegate, upload, TransferCompression.negotiate(compressions, this.delegate));
+        } catch (IOException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public IRemoteFile newHandle() throws RemoteException {
+        RemoteFileImpl handle = new RemoteFileImpl(this.rootFile);
+        handle.newHandle = true;
+        return (IRemoteFile) RMIConfig.getInstance().exportObject(handle);
+    }
+
+    @Override
+    public void release() throws RemoteException {
+        if (newHandle) {
+            RMIConfig.unExportObject(this);
+        }
+    }
+
+    @Override
+    public boolean matchesProbe(String name, byte[] contents) throws RemoteException {
+        if (!new File(name).getName().equals(name) || contents.length == 0) {
+            return false;
+        }
+        File probe = new File(this.delegate.getParentFile(), name);
+        if (!probe.isFile() || probe.length() != contents.length) {
+            return false;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(probe));
+            try {
+                byte[] read = new byte[contents.length];
+                input.readFully(read);
+                return Arrays.equals(contents, read);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public String[] list() throws RemoteException {
         return delegate.list();
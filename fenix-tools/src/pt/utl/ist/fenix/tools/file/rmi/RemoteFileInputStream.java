@@ -2,13 +2,71 @@ package pt.utl.ist.fenix.tools.file.rmi;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Reads a remote file in chunks of the size chosen by the server, so that each remote call moves a whole block instead of a
+ * single byte. Unless disabled, the next chunk is requested in the background while the current one is being consumed.
+ * Chunks are compressed on the wire with the first of {@link RMIConfig#getTransferCompressions()} the server also uses.
+ */
 public class RemoteFileInputStream extends InputStream {
 
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RemoteFileInputStreamPrefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final byte[] EMPTY = new byte[0];
+
     IRemoteInputStream delegate = null;
 
+    private final int chunkSize;
+
+    private final boolean prefetch;
+
+    private final ChunkCodec codec;
+
+    private byte[] buffer = EMPTY;
+
+    private int position = 0;
+
+    private Future<byte[]> nextChunk = null;
+
+    private boolean ended = false;
+
     public RemoteFileInputStream(IRemoteFile remoteFile) throws IOException {
+        this(remoteFile, true);
+    }
+
+    public RemoteFileInputStream(IRemoteFile remoteFile, boolean prefetch) throws IOException {
         delegate = remoteFile.getInputStream();
+        chunkSize = delegate.getChunkSize();
+        this.prefetch = prefetch;
+        codec = negotiateCompression(delegate);
+    }
+
+    private static ChunkCodec negotiateCompression(IRemoteInputStream delegate) {
+        String[] offer = TransferCompression.offer();
+        if (offer.length == 0) {
+            return null;
+        }
+        try {
+            return ChunkCodec.forCompression(delegate.negotiateCompression(offer));
+        } catch (RemoteException e) {
+            // a server that doesn't compress
+            return null;
+        }
     }
 
     /* (non-Javadoc)
@@ -16,6 +74,13 @@ public class RemoteFileInputStream extends InputStream {
      */
     @Override
     public int available() throws IOException {
+        if (position < buffer.length) {
+            return buffer.length - position;
+        }
+        if (ended || nextChunk != null) {
+            // while prefetching the server stream may be busy, and is already past the prefetched chunk
+            return 0;
+        }
         return delegate.available();
     }
 
@@ -24,6 +89,19 @@ public class RemoteFileInputStream extends InputStream {
      */
     @Override
     public void close() throws IOException {
+        if (nextChunk != null) {
+            try {
+                nextChunk.get();
+            } catch (Exception ignored) {
+            }
+            nextChunk = null;
+        }
+        ended = true;
+        buffer = EMPTY;
+        position = 0;
+        if (codec != null) {
+            codec.end();
+        }
         delegate.close();
     }
 
@@ -32,7 +110,81 @@ public class RemoteFileInputStream extends InputStream {
      */
     @Override
     public int read() throws IOException {
-        return delegate.read();
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Replaces the consumed buffer with the next chunk, and starts fetching the one after it.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        if (ended) {
+            return false;
+        }
+        byte[] chunk;
+        if (nextChunk != null) {
+            try {
+                chunk = nextChunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } finally {
+                nextChunk = null;
+            }
+        } else {
+            chunk = fetch();
+        }
+        if (chunk == null) {
+            ended = true;
+            buffer = EMPTY;
+            position = 0;
+            return false;
+        }
+        buffer = chunk;
+        position = 0;
+        if (prefetch && chunk.length == chunkSize) {
+            nextChunk = PREFETCHER.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return fetch();
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decodes the next chunk, in the background when prefetching.
+     */
+    private byte[] fetch() throws IOException {
+        byte[] chunk = delegate.read(chunkSize);
+        return chunk != null && codec != null ? codec.decode(chunk) : chunk;
     }
 
 }
@@ -4,21 +4,50 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.rmi.RemoteException;
 
+/**
+ * Writes a remote file in chunks of the size chosen by the server. Writes are buffered locally and each full chunk is sent in
+ * a single remote call, as an array of exactly the bytes written, compressed with the first of
+ * {@link RMIConfig#getTransferCompressions()} the server also uses.
+ */
 public class RemoteFileOutputStream extends OutputStream {
 
     private IRemoteOutputStream remoteOutputStream = null;
 
+    private final byte[] buffer;
+
+    private final ChunkCodec codec;
+
+    private int count = 0;
+
     public RemoteFileOutputStream(IRemoteFile remoteFile) throws IOException {
         try {
             remoteOutputStream = remoteFile.getOuputStream();
+            buffer = new byte[remoteOutputStream.getChunkSize()];
         } catch (RemoteException e) {
             throw new IOException(e.getMessage());
         }
+        codec = negotiateCompression(remoteOutputStream);
+    }
+
+    private static ChunkCodec negotiateCompression(IRemoteOutputStream remoteOutputStream) {
+        String[] offer = TransferCompression.offer();
+        if (offer.length == 0) {
+            return null;
+        }
+        try {
+            return ChunkCodec.forCompression(remoteOutputStream.negotiateCompression(offer));
+        } catch (RemoteException e) {
+            // a server that doesn't compress
+            return null;
+        }
     }
 
     @Override
     public void write(int b) throws IOException {
-        remoteOutputStream.write(b);
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
     }
 
     /* (non-Javadoc)
@@ -26,7 +55,14 @@ public class RemoteFileOutputStream extends OutputStream {
      */
     @Override
     public void close() throws IOException {
-        remoteOutputStream.close();
+        try {
+            flushBuffer();
+            remoteOutputStream.close();
+        } finally {
+            if (codec != null) {
+                codec.end();
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -34,6 +70,7 @@ public class RemoteFileOutputStream extends OutputStream {
      */
     @Override
     public void flush() throws IOException {
+        flushBuffer();
         remoteOutputStream.flush();
     }
 
@@ -42,7 +79,34 @@ public class RemoteFileOutputStream extends OutputStream {
      */
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        remoteOutputStream.write(b, off, len);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (count == 0 && len >= buffer.length) {
+                // a whole chunk, sent without going through the buffer
+                if (codec != null) {
+                    remoteOutputStream.write(codec.encode(b, off, buffer.length));
+                } else if (off == 0 && len == b.length && len == buffer.length) {
+                    remoteOutputStream.write(b);
+                } else {
+                    byte[] chunk = new byte[buffer.length];
+                    System.arraycopy(b, off, chunk, 0, chunk.length);
+                    remoteOutputStream.write(chunk);
+                }
+                off += buffer.length;
+                len -= buffer.length;
+            } else {
+                int copied = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, copied);
+                count += copied;
+                off += copied;
+                len -= copied;
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -50,7 +114,23 @@ public class RemoteFileOutputStream extends OutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        remoteOutputStream.write(b);
+        write(b, 0, b.length);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (codec != null) {
+            remoteOutputStream.write(codec.encode(buffer, 0, count));
+        } else if (count == buffer.length) {
+            remoteOutputStream.write(buffer);
+        } else {
+            byte[] chunk = new byte[count];
+            System.arraycopy(buffer, 0, chunk, 0, count);
+            remoteOutputStream.write(chunk);
+        }
+        count = 0;
     }
 
 }
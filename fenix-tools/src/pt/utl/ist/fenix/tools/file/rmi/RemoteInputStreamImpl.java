@@ -13,6 +13,7 @@ public class RemoteInputStreamImpl implements IRemoteInputStream, RemoteHandledS
     @SuppressWarnings("unused")
     private File underlyingFile;
     private FileInputStream delegate = null;
+    private ChunkCodec codec = null;
 
     public RemoteInputStreamImpl(RemoteFileImpl remoteFileImpl, File underlyingFile) throws RemoteException {
         this.remoteFileImpl = remoteFileImpl;
@@ -35,6 +36,51 @@ public class RemoteInputStreamImpl implements IRemoteInputStream, RemoteHandledS
         }
     }
 
+    @Override
+    public byte[] read(int length) throws RemoteException {
+        updateLastAccessedTime();
+        byte[] block = new byte[Math.max(0, Math.min(length, RMIConfig.MAX_REMOTE_STREAM_CHUNK))];
+        int count = 0;
+        try {
+            while (count < block.length) {
+                int read = delegate.read(block, count, block.length - count);
+                if (read == -1) {
+                    break;
+                }
+                count += read;
+            }
+        } catch (IOException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+        if (count == 0 && block.length > 0) {
+            return null;
+        }
+        if (codec != null) {
+            return codec.encode(block, 0, count);
+        }
+        if (count < block.length) {
+            byte[] last = new byte[count];
+            System.arraycopy(block, 0, last, 0, count);
+            return last;
+        }
+        return block;
+    }
+
+    @Override
+    public int getChunkSize() throws RemoteException {
+        return RMIConfig.getInstance().getRemoteStreamChunkSize();
+    }
+
+    @Override
+    public String negotiateCompression(String[] accepted) throws RemoteException {
+        updateLastAccessedTime();
+        TransferCompression compression = TransferCompression.negotiate(accepted, underlyingFile);
+        if (compression != TransferCompression.NONE) {
+            codec = new ChunkCodec(compression, RMIConfig.getInstance().getTransferCompressionLevel());
+        }
+        return compression.name();
+    }
+
     @Override
     public int available() throws RemoteException {
         updateLastAccessedTime();
@@ -49,6 +95,9 @@ public class RemoteInputStreamImpl implements IRemoteInputStream, RemoteHandledS
     public void close() throws RemoteException {
         updateLastAccessedTime();
         this.hasEnded = true;
+        if (codec != null) {
+            codec.end();
+        }
         try {
             delegate.close();
         } catch (IOException e) {
@@ -56,7 +105,7 @@ public class RemoteInputStreamImpl implements IRemoteInputStream, RemoteHandledS
         }
     }
 
-    private long lastAccessTime = 0L;
+    private volatile long lastAccessTime = 0L;
 
     @Override
     public long getLastAccessTime() {
@@ -68,7 +117,7 @@ public class RemoteInputStreamImpl implements IRemoteInputStream, RemoteHandledS
         close();
     }
 
-    private boolean hasEnded = false;
+    private volatile boolean hasEnded = false;
 
     @Override
     public boolean hasEnded() {
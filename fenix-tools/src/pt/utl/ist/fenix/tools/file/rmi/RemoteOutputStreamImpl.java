@@ -13,6 +13,7 @@ public class RemoteOutputStreamImpl implements IRemoteOutputStream, RemoteHandle
     @SuppressWarnings("unused")
     private File underlyingFile;
     private FileOutputStream delegate = null;
+    private ChunkCodec codec = null;
 
     public RemoteOutputStreamImpl(RemoteFileImpl remoteFileImpl, File underlyingFile) throws RemoteException {
         this.remoteFileImpl = remoteFileImpl;
@@ -58,6 +59,9 @@ public class RemoteOutputStreamImpl implements IRemoteOutputStream, RemoteHandle
     @Override
     public void close() throws RemoteException {
         updateLastAccessedTime();
+        if (codec != null) {
+            codec.end();
+        }
         try {
             delegate.close();
             hasEnded = true;
@@ -72,13 +76,28 @@ public class RemoteOutputStreamImpl implements IRemoteOutputStream, RemoteHandle
     public void write(byte[] b) throws RemoteException {
         updateLastAccessedTime();
         try {
-            delegate.write(b);
+            delegate.write(codec != null ? codec.decode(b) : b);
         } catch (IOException e) {
             throw new RemoteException(e.getMessage(), e);
         }
     }
 
-    private long lastAccessTime = 0L;
+    @Override
+    public int getChunkSize() throws RemoteException {
+        return RMIConfig.getInstance().getRemoteStreamChunkSize();
+    }
+
+    @Override
+    public String negotiateCompression(String[] accepted) throws RemoteException {
+        updateLastAccessedTime();
+        TransferCompression compression = TransferCompression.negotiate(accepted, underlyingFile);
+        if (compression != TransferCompression.NONE) {
+            codec = new ChunkCodec(compression, RMIConfig.getInstance().getTransferCompressionLevel());
+        }
+        return compression.name();
+    }
+
+    private volatile long lastAccessTime = 0L;
 
     @Override
     public long getLastAccessTime() {
@@ -87,10 +106,13 @@ public class RemoteOutputStreamImpl implements IRemoteOutputStream, RemoteHandle
 
     @Override
     public void destroy() throws IOException {
+        if (codec != null) {
+            codec.end();
+        }
         delegate.close();
     }
 
-    private boolean hasEnded = false;
+    private volatile boolean hasEnded = false;
 
     @Override
     public boolean hasEnded() {
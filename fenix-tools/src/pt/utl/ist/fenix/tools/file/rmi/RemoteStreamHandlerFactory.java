@@ -7,7 +7,7 @@ public class RemoteStreamHandlerFactory {
      */
     public static final long DEFAULT_REMOTE_STREAMS_IDLE_TIMEOUT = 10000L;
     /**
-     * By default the thread will check for idle streams in 1 second intervals
+     * No longer used, idle streams are found through their leases instead of periodic checks
      */
     public static final long DEFAULT_REMOTE_STREAMS_IDLE_CHECK_INTERVAL = 1000L;
 
@@ -56,6 +56,20 @@ public class RemoteStreamHandlerFactory {
         getInstance().getRemoteStreamsHandler().unManageStream(stream);
     }
 
+    /**
+     * @return the number of remote streams currently open, whether in use or idle
+     */
+    public static int getOpenStreamCount() {
+        return getInstance().getRemoteStreamsHandler().getOpenStreamCount();
+    }
+
+    /**
+     * @return the number of remote streams closed for being idle since the handler started
+     */
+    public static long getExpiredStreamCount() {
+        return getInstance().getRemoteStreamsHandler().getExpiredStreamCount();
+    }
+
     public static void shutdown() {
         if (getInstance().remoteStreamHandler != null) {
             getInstance().remoteStreamHandler.stopNow();
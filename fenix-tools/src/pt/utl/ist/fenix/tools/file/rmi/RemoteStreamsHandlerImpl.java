@@ -1,98 +1,151 @@
 package pt.utl.ist.fenix.tools.file.rmi;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closes remote streams left idle by their clients. Each managed stream holds a lease in a {@link DelayQueue}, due when the
+ * stream would be idle for the timeout if not accessed again. Streams record their accesses themselves, without going through
+ * the handler, and this thread only wakes when a lease is due: if the stream was accessed in the meantime the lease is renewed
+ * from its last access, otherwise the stream is destroyed and unexported. Ended streams are unexported when their lease is
+ * next due.
+ */
 public class RemoteStreamsHandlerImpl extends Thread {
 
+    private static class Lease implements Delayed {
+        private final RemoteHandledStream stream;
+
+        private final long expiry;
+
+        private volatile boolean cancelled = false;
+
+        private Lease(RemoteHandledStream stream, long expiry) {
+            this.stream = stream;
+            this.expiry = expiry;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiry - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long otherExpiry = ((Lease) other).expiry;
+            return expiry < otherExpiry ? -1 : (expiry == otherExpiry ? 0 : 1);
+        }
+    }
+
     private volatile boolean stop = false;
 
-    private List<RemoteHandledStream> remoteStreams = new ArrayList<RemoteHandledStream>();
+    private final DelayQueue<Lease> leases = new DelayQueue<Lease>();
 
-    private long timeout = 1000L;
+    private final ConcurrentMap<RemoteHandledStream, Lease> remoteStreams = new ConcurrentHashMap<RemoteHandledStream, Lease>();
 
-    private long checkInterval = 100L;
+    private final AtomicLong expiredStreams = new AtomicLong();
 
+    private long timeout = 1000L;
+
+    /**
+     * @param timeout
+     *            milliseconds a stream may stay idle
+     * @param checkInterval
+     *            no longer used, as idle streams are found through their leases instead of periodic checks
+     */
     public RemoteStreamsHandlerImpl(long timeout, long checkInterval) {
         super("RemoteStreamsHandlerThread");
         this.timeout = timeout;
-        this.checkInterval = checkInterval;
     }
 
     @Override
     public void run() {
         while (!stop) {
-            synchronized (remoteStreams) {
-                try {
-                    remoteStreams.wait(checkInterval);
-                } catch (InterruptedException ignored) {
-                }
-
-                if (stop) {
-                    break;
-                }
-
-                ArrayList<RemoteHandledStream> toRemove = new ArrayList<RemoteHandledStream>(remoteStreams.size());
-
-                for (RemoteHandledStream ref : remoteStreams) {
-                    if (stop) {
-                        break;
-                    }
-
-                    if (ref == null) {
-                        toRemove.add(ref);
-                    } else {
-                        if (System.currentTimeMillis() - ref.getLastAccessTime() >= timeout && !ref.hasEnded()) {
-                            try {
-                                ref.destroy();
-                            } catch (IOException ignored) {
-                            }
-                            toRemove.add(ref);
-                        } else if (ref.hasEnded()) {
-                            toRemove.add(ref);
-                        }
-                    }
-                }
-
-                remoteStreams.removeAll(toRemove);
+            Lease lease;
+            try {
+                lease = leases.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (lease.cancelled) {
+                continue;
+            }
+            RemoteHandledStream stream = lease.stream;
+            if (stream.hasEnded()) {
+                release(lease);
+                continue;
             }
+            long expiry = stream.getLastAccessTime() + timeout;
+            if (expiry > System.currentTimeMillis()) {
+                renew(lease, expiry);
+                continue;
+            }
+            try {
+                stream.destroy();
+            } catch (IOException ignored) {
+            }
+            expiredStreams.incrementAndGet();
+            release(lease);
+        }
+    }
 
+    private void renew(Lease lease, long expiry) {
+        Lease renewed = new Lease(lease.stream, expiry);
+        if (remoteStreams.replace(lease.stream, lease, renewed)) {
+            leases.add(renewed);
         }
     }
 
-    public void stopNow() {
-        synchronized (remoteStreams) {
-            stop = true;
-            remoteStreams.notify();
+    private void release(Lease lease) {
+        if (remoteStreams.remove(lease.stream, lease) && lease.stream instanceof Remote) {
+            try {
+                RMIConfig.unExportObject((Remote) lease.stream);
+            } catch (NoSuchObjectException ignored) {
+                // never exported or already unexported on close
+            }
         }
     }
 
+    public void stopNow() {
+        stop = true;
+        interrupt();
+    }
+
     public void manageStream(RemoteHandledStream newStream) {
-        synchronized (remoteStreams) {
-            remoteStreams.add(newStream);
-            remoteStreams.notify();
+        Lease lease = new Lease(newStream, newStream.getLastAccessTime() + timeout);
+        Lease previous = remoteStreams.put(newStream, lease);
+        if (previous != null) {
+            previous.cancelled = true;
         }
+        leases.add(lease);
     }
 
     public void unManageStream(RemoteHandledStream stream) {
-        ArrayList<RemoteHandledStream> toRemove = new ArrayList<RemoteHandledStream>(remoteStreams.size());
-        ArrayList<RemoteHandledStream> originalList = new ArrayList<RemoteHandledStream>(remoteStreams.size());
-        synchronized (remoteStreams) {
-            originalList.addAll(remoteStreams);
-        }
-        for (RemoteHandledStream ref : originalList) {
-            if (ref == null) {
-                toRemove.add(ref);
-            } else if (ref == stream) {
-                toRemove.add(ref);
-            }
-        }
-        synchronized (remoteStreams) {
-            remoteStreams.removeAll(toRemove);
-            remoteStreams.notify();
+        Lease lease = remoteStreams.remove(stream);
+        if (lease != null) {
+            // left in the queue, where it is dropped when due instead of searched for now
+            lease.cancelled = true;
         }
+    }
+
+    /**
+     * @return the number of streams currently managed, whether in use or idle
+     */
+    public int getOpenStreamCount() {
+        return remoteStreams.size();
+    }
 
+    /**
+     * @return the number of streams destroyed for being idle since this handler started
+     */
+    public long getExpiredStreamCount() {
+        return expiredStreams.get();
     }
 
 }
@@ -2,10 +2,12 @@ package pt.utl.ist.fenix.tools.file.rmi;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.rmi.server.RMIClientSocketFactory;
 
 import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
 import javax.rmi.ssl.SslRMIClientSocketFactory;
 
 import pt.utl.ist.fenix.tools.file.utils.FileUtils;
@@ -28,6 +30,24 @@ public class SslRmiClientSocketFactory implements RMIClientSocketFactory, Serial
         }
     }
 
+    /**
+     * Same as {@link #createSocket(String, int)}, giving up when the connection is not made within the timeout.
+     */
+    public Socket createSocket(String host, int port, int connectTimeout) throws IOException {
+        initDelegate();
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        SSLSocketFactory factory =
+                delegate instanceof SSLSocketFactory ? (SSLSocketFactory) delegate : (SSLSocketFactory) SSLSocketFactory
+                        .getDefault();
+        return factory.createSocket(socket, host, port, true);
+    }
+
     private void initDelegate() {
         if (delegate == null && defaultDispatch == null) {
             if (RMIConfig.getInstance().isValidKeyStore(RMIConfig.getInstance().getSslTrustStore())) {
@@ -0,0 +1,48 @@
+package pt.utl.ist.fenix.tools.file.rmi;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Compression of file contents moved through remote streams and data channels. Clients offer the ones they accept, in
+ * {@link RMIConfig#getTransferCompressions()}, and the server picks the first of its own list that was offered, or NONE when
+ * the file type is known not to compress, see {@link RMIConfig#isCompressible(String)}.
+ * <ul>
+ * <li>NONE: contents are moved as they are.</li>
+ * <li>DEFLATE: better ratio, for slow links.</li>
+ * <li>LZ: several times faster than DEFLATE, with a lower ratio.</li>
+ * </ul>
+ * Each chunk is compressed on its own, and sent as it is when it doesn't get smaller.
+ */
+public enum TransferCompression {
+    NONE, DEFLATE, LZ;
+
+    /**
+     * The names of the compressions accepted by this client, to offer to the server.
+     */
+    static String[] offer() {
+        List<TransferCompression> compressions = RMIConfig.getInstance().getTransferCompressions();
+        String[] names = new String[compressions.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = compressions.get(i).name();
+        }
+        return names;
+    }
+
+    /**
+     * The compression the server uses for the given file, among the ones offered by the client.
+     */
+    static TransferCompression negotiate(String[] offered, File file) {
+        if (offered == null || !RMIConfig.getInstance().isCompressible(file.getName())) {
+            return NONE;
+        }
+        for (TransferCompression compression : RMIConfig.getInstance().getTransferCompressions()) {
+            for (String name : offered) {
+                if (compression != NONE && compression.name().equals(name)) {
+                    return compression;
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -5,8 +5,8 @@ import java.io.IOException;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
-import org.apache.commons.httpclient.protocol.Protocol;
+
+import pt.utl.ist.fenix.tools.http.client.HttpClientFactory;
 
 public class PropertiesTranslator extends PropertiesConverter {
 
@@ -34,9 +34,7 @@ public class PropertiesTranslator extends PropertiesConverter {
         final String host = "translate.google.com";
         final int port = 80;
 
-        final HttpClient httpClient = new HttpClient();
-        final Protocol protocol = new Protocol(host, new DefaultProtocolSocketFactory(), port);
-        httpClient.getHostConfiguration().setHost(host, port, protocol);
+        final HttpClient httpClient = HttpClientFactory.getHttpClient(host, Integer.toString(port));
 
         final PostMethod postMethod = new PostMethod();
         postMethod.setFollowRedirects(false);
@@ -44,8 +42,12 @@ public class PropertiesTranslator extends PropertiesConverter {
         postMethod.addParameter("langpair", fromLang + "|" + toLang);
         postMethod.addParameter("text", string);
         postMethod.addParameter("", "Translate");
-        httpClient.executeMethod(postMethod);
-        return postMethod.getResponseBodyAsString();
+        try {
+            httpClient.executeMethod(postMethod);
+            return postMethod.getResponseBodyAsString();
+        } finally {
+            postMethod.releaseConnection();
+        }
     }
 
 }
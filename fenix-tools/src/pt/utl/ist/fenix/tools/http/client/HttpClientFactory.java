@@ -1,42 +1,137 @@
 package pt.utl.ist.fenix.tools.http.client;
 
 import java.io.IOException;
+import java.util.Properties;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpMethodRetryHandler;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
 import org.apache.commons.httpclient.protocol.Protocol;
-
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import pt.utl.ist.fenix.tools.util.PropertiesManager;
+
+/**
+ * Makes the http clients of the application. All of them share one pool of keep-alive connections, limited per host and in
+ * total, so bursts of requests reuse connections instead of opening one socket each. Each client still keeps its own state,
+ * such as cookies. Connections idle for more than {@link #IDLE_CONNECTION_TIMEOUT} are closed in the background, and pooled
+ * connections are checked before being reused, in case the server closed them.
+ *
+ * Methods must release their connection back to the pool, with {@link HttpMethod#releaseConnection()} or by reading the
+ * whole response body.
+ *
+ * As the pool is shared by every client of the application, its limits and timeouts are read once, from the optional
+ * http.client.maxConnectionsPerHost, http.client.maxTotalConnections, http.client.connectionTimeout and
+ * http.client.readTimeout entries of /configuration.properties.
+ */
 public class HttpClientFactory {
 
-    private final static int CONNECTION_TIMEOUT = 30000000;
+    private final static String CONFIGURATION = "/configuration.properties";
+
+    /**
+     * Milliseconds to wait for a connection to be established
+     */
+    private final static int CONNECTION_TIMEOUT = 30000;
+
+    /**
+     * Milliseconds to wait for data while reading a response
+     */
+    private final static int SO_TIMEOUT = 300000;
+
+    /**
+     * Milliseconds to wait for a free connection of the pool
+     */
+    private final static long CONNECTION_MANAGER_TIMEOUT = 60000;
+
+    private final static int MAX_CONNECTIONS_PER_HOST = 20;
+
+    private final static int MAX_TOTAL_CONNECTIONS = 100;
+
+    /**
+     * Milliseconds a pooled connection may stay idle before it is closed
+     */
+    private final static long IDLE_CONNECTION_TIMEOUT = 60000;
+
+    private static final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+
+    private static final IdleConnectionTimeoutThread idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+
+    static {
+        final Properties properties;
+        try {
+            properties = PropertiesManager.loadProperties(CONFIGURATION);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        final HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setConnectionTimeout(getInt(properties, "http.client.connectionTimeout", CONNECTION_TIMEOUT));
+        params.setSoTimeout(getInt(properties, "http.client.readTimeout", SO_TIMEOUT));
+        params.setStaleCheckingEnabled(true);
+        params.setTcpNoDelay(true);
+        params.setDefaultMaxConnectionsPerHost(getInt(properties, "http.client.maxConnectionsPerHost", MAX_CONNECTIONS_PER_HOST));
+        params.setMaxTotalConnections(getInt(properties, "http.client.maxTotalConnections", MAX_TOTAL_CONNECTIONS));
+
+        idleConnectionTimeoutThread.setName("HttpClientIdleConnectionCloser");
+        idleConnectionTimeoutThread.setConnectionTimeout(IDLE_CONNECTION_TIMEOUT);
+        idleConnectionTimeoutThread.setTimeoutInterval(IDLE_CONNECTION_TIMEOUT / 2);
+        idleConnectionTimeoutThread.addConnectionManager(connectionManager);
+        idleConnectionTimeoutThread.start();
+    }
 
     protected HttpClientFactory() {
     }
 
+    private static int getInt(final Properties properties, final String name, final int defaultValue) {
+        final String value = properties.getProperty(name);
+        return value != null && value.trim().length() > 0 ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    /**
+     * @return a client of the shared connection pool, for methods with absolute urls
+     */
+    public static HttpClient getHttpClient() {
+        final HttpClientParams params = new HttpClientParams();
+        params.setConnectionManagerTimeout(CONNECTION_MANAGER_TIMEOUT);
+        //This one is also deprecated... see below the new way
+        //client.setStrictMode(false);
+        params.makeLenient();
+        return new HttpClient(params, connectionManager);
+    }
+
     public static HttpClient getHttpClient(final String host, final String port) {
         int serverPort = Integer.parseInt(port);
 
-        final HttpClient client = new HttpClient();
+        final HttpClient client = getHttpClient();
         final Protocol protocol = getProtocol(host, serverPort);
 
         client.getHostConfiguration().setHost(host, serverPort, protocol);
         //The following is deprecated... should use Method.setCookiePolicy (done in getGetMethod)
         //client.getState().setCookiePolicy(CookiePolicy.getDefaultPolicy());
 
-        //This one is also deprecated... see below the new way
-        //client.setConnectionTimeout(CONNECTION_TIMEOUT);
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(CONNECTION_TIMEOUT);
+        return client;
+    }
 
-        //This one is also deprecated... see below the new way
-        //client.setStrictMode(false);
-        client.getParams().makeLenient();
+    /**
+     * The parameters of the shared connection pool, such as its limits and timeouts. Changing them changes them for every
+     * client of the application.
+     */
+    public static HttpConnectionManagerParams getConnectionManagerParams() {
+        return connectionManager.getParams();
+    }
 
-        return client;
+    /**
+     * Closes all the pooled connections and stops closing idle ones. The clients made before or after can't be used.
+     */
+    public static void shutdown() {
+        idleConnectionTimeoutThread.shutdown();
+        connectionManager.shutdown();
     }
 
     protected static Protocol getProtocol(final String serverHostname, final int serverPort) {
@@ -66,6 +66,8 @@ public class WikiClient {
     protected static void executeMethod(final HttpClient httpClient, final GetMethod method) throws IOException, HttpException {
         method.setFollowRedirects(false);
         httpClient.executeMethod(method);
+        // reads the whole body, which gives the connection back to the pool
+        method.getResponseBody();
     }
 
 }
@@ -1,22 +1,76 @@
 package pt.utl.ist.fenix.tools.spreadsheet;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import pt.utl.ist.fenix.tools.spreadsheet.converters.CellConverter;
 
 class AbstractSheetBuilder {
+    private static final CellConverter NO_CONVERTER = new CellConverter() {
+        @Override
+        public Object convert(Object source) {
+            return source;
+        }
+    };
+
     protected final Map<Class<?>, CellConverter> converters = new HashMap<Class<?>, CellConverter>();
 
+    /**
+     * Converter of each class already seen, {@link #NO_CONVERTER} for classes with none.
+     */
+    private final Map<Class<?>, CellConverter> resolved = new IdentityHashMap<Class<?>, CellConverter>();
+
+    /**
+     * Last class and converter seen in each column. Columns almost always hold values of a single class, so the converter of a
+     * cell is usually found by comparing its class with the previous one in the same column.
+     */
+    private Class<?>[] columnClasses = new Class<?>[0];
+
+    private CellConverter[] columnConverters = new CellConverter[0];
+
     protected Object convert(Object content) {
-        if (converters.containsKey(content.getClass())) {
-            CellConverter converter = converters.get(content.getClass());
-            return converter.convert(content);
+        return getConverter(content.getClass()).convert(content);
+    }
+
+    protected Object convert(int column, Object content) {
+        Class<?> type = content.getClass();
+        if (column >= columnClasses.length) {
+            growColumns(column + 1);
         }
-        return content;
+        if (columnClasses[column] != type) {
+            columnClasses[column] = type;
+            columnConverters[column] = getConverter(type);
+        }
+        return columnConverters[column].convert(content);
+    }
+
+    private CellConverter getConverter(Class<?> type) {
+        CellConverter converter = resolved.get(type);
+        if (converter == null) {
+            converter = converters.get(type);
+            if (converter == null) {
+                converter = NO_CONVERTER;
+            }
+            resolved.put(type, converter);
+        }
+        return converter;
+    }
+
+    private void growColumns(int size) {
+        int length = Math.max(size, columnClasses.length * 2);
+        Class<?>[] classes = new Class<?>[length];
+        CellConverter[] converters = new CellConverter[length];
+        System.arraycopy(columnClasses, 0, classes, 0, columnClasses.length);
+        System.arraycopy(columnConverters, 0, converters, 0, columnConverters.length);
+        columnClasses = classes;
+        columnConverters = converters;
     }
 
     protected void addConverter(Class<?> type, CellConverter converter) {
         converters.put(type, converter);
+        resolved.clear();
+        columnClasses = new Class<?>[0];
+        columnConverters = new CellConverter[0];
     }
 }
@@ -0,0 +1,14 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+/**
+ * How {@link SpreadsheetBuilder} sizes the columns of excel and xlsx spreadsheets.
+ * <ul>
+ * <li>EXACT: measures the rendered text of every cell once the sheet is complete. Accurate but slow on large sheets, and
+ * only available when the whole sheet is in memory, the streaming xlsx format estimates instead.</li>
+ * <li>SAMPLED: estimates the width from the text length of the cells in the first rows of each sheet.</li>
+ * <li>ESTIMATED: estimates the width from the text length of every cell, as the rows are written.</li>
+ * </ul>
+ */
+public enum ColumnWidthMode {
+    EXACT, SAMPLED, ESTIMATED;
+}
@@ -0,0 +1,93 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * Column widths of a sheet, collected from the cells as they are written. In the estimating modes the width of a column is
+ * the length of its longest text, in characters; merged cells are not measured.
+ */
+class ColumnWidths {
+    private static final int PADDING = 2;
+
+    private static final int MAX_CHARACTERS = 255;
+
+    private static final int DATE_CHARACTERS = 16;
+
+    private final ColumnWidthMode mode;
+
+    private final int sampleRows;
+
+    private int[] characters = new int[16];
+
+    private int columnCount = 0;
+
+    ColumnWidths(ColumnWidthMode mode, int sampleRows) {
+        this.mode = mode;
+        this.sampleRows = sampleRows;
+    }
+
+    void measure(int rowIndex, int columnIndex, short span, Object content) {
+        columnCount = Math.max(columnCount, columnIndex + Math.max(span, (short) 1));
+        if (mode == ColumnWidthMode.EXACT || (mode == ColumnWidthMode.SAMPLED && rowIndex >= sampleRows) || span > 1
+                || content == null) {
+            return;
+        }
+        if (columnIndex >= characters.length) {
+            int[] grown = new int[Math.max(columnIndex + 1, characters.length * 2)];
+            System.arraycopy(characters, 0, grown, 0, characters.length);
+            characters = grown;
+        }
+        characters[columnIndex] = Math.max(characters[columnIndex], length(content));
+    }
+
+    private static int length(Object content) {
+        if (content instanceof Double) {
+            double number = (Double) content;
+            return number == Math.rint(number) && Math.abs(number) < 1e15 ? Long.toString((long) number).length() : Double
+                    .toString(number).length();
+        }
+        if (content instanceof Date || content instanceof Calendar) {
+            return DATE_CHARACTERS;
+        }
+        if (content instanceof Formula) {
+            return 0;
+        }
+        String text = content instanceof RichTextString ? ((RichTextString) content).getString() : content.toString();
+        int longest = 0;
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            longest = Math.max(longest, end - start);
+            start = end + 1;
+        }
+        return Math.max(longest, text.length() - start);
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return the estimated width of the column in characters, or 0 if none of its cells were measured.
+     */
+    int getCharacters(int columnIndex) {
+        if (columnIndex >= characters.length || characters[columnIndex] == 0) {
+            return 0;
+        }
+        return Math.min(characters[columnIndex] + PADDING, MAX_CHARACTERS);
+    }
+
+    void apply(Sheet sheet) {
+        for (int i = 0; i < columnCount; i++) {
+            if (mode == ColumnWidthMode.EXACT) {
+                sheet.autoSizeColumn(i);
+            } else if (getCharacters(i) > 0) {
+                sheet.setColumnWidth(i, getCharacters(i) * 256);
+            }
+        }
+    }
+}
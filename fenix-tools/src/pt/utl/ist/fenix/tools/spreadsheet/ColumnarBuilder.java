@@ -0,0 +1,406 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonthDay;
+
+import pt.utl.ist.fenix.tools.spreadsheet.SheetData.Cell;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.CellConverter;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.excel.BigDecimalCellConverter;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.excel.DateTimeCellConverter;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.excel.LocalDateCellConverter;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.excel.MultiLanguageStringCellConverter;
+import pt.utl.ist.fenix.tools.spreadsheet.converters.excel.YearMonthDayCellConverter;
+import pt.utl.ist.fenix.tools.util.i18n.MultiLanguageString;
+
+/**
+ * Writes sheets in a typed, compressed, columnar binary format, meant to be loaded by analysis tools much faster than
+ * re-parsing csv. Rows are written in groups of up to {@link #ROW_GROUP_SIZE} rows, so only one group is held in memory, and
+ * each column of a group is stored as a chunk with its own type, encoding and statistics.
+ *
+ * All numbers are big-endian, and strings are written as an int byte length followed by their UTF-8 bytes. A file is:
+ *
+ * <pre>
+ * file      := "FTCOL" version:byte(1) sheet* 'E'
+ * sheet     := 'S' name:string columnCount:int columnName:string* group*
+ * group     := 'G' rowCount:int columnCount:int chunk*
+ * chunk     := type:byte encoding:byte nullCount:int [min max] length:int deflated:byte[length]
+ * </pre>
+ *
+ * Column names are taken from the last header row. A group may have more columns than the sheet has names. The type is
+ * one of NULL (0), BOOLEAN (1), LONG (2), DOUBLE (3), TIMESTAMP (4, milliseconds since the epoch) or STRING (5); a
+ * column whose values mix types is written as STRING, except for LONG and DOUBLE which are written as DOUBLE. Min and
+ * max are present when the chunk has any non null value, and are a byte for BOOLEAN, a long for LONG and TIMESTAMP, a
+ * double for DOUBLE and a string for STRING. NaN values are left out of the DOUBLE min and max, which are only NaN when
+ * every value is. The deflated data is a null bitmap of (rowCount + 7) / 8 bytes, with bit (i % 8) of byte (i / 8) set
+ * when row i has a value, followed by the non null values: packed bits for BOOLEAN, longs, doubles, or for STRING
+ * either the strings (PLAIN, 0) or a dictionary size, the distinct strings and one int index per value (DICTIONARY, 1).
+ *
+ * Footers are not written, and formulas are written as nulls.
+ */
+class ColumnarBuilder extends AbstractSheetBuilder {
+    static Map<Class<?>, CellConverter> BASE_CONVERTERS;
+
+    static {
+        BASE_CONVERTERS = new HashMap<Class<?>, CellConverter>();
+        BASE_CONVERTERS.put(DateTime.class, new DateTimeCellConverter());
+        BASE_CONVERTERS.put(YearMonthDay.class, new YearMonthDayCellConverter());
+        BASE_CONVERTERS.put(LocalDate.class, new LocalDateCellConverter());
+        BASE_CONVERTERS.put(BigDecimal.class, new BigDecimalCellConverter());
+        BASE_CONVERTERS.put(MultiLanguageString.class, new MultiLanguageStringCellConverter());
+    }
+
+    static final int ROW_GROUP_SIZE = 64 * 1024;
+
+    private static final byte[] MAGIC = { 'F', 'T', 'C', 'O', 'L' };
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0, BOOLEAN = 1, LONG = 2, DOUBLE = 3, TIMESTAMP = 4, STRING = 5;
+
+    private static final byte PLAIN = 0, DICTIONARY = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Rows the column buffers start with. They double as rows are added, up to {@link #ROW_GROUP_SIZE}
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    {
+        converters.putAll(BASE_CONVERTERS);
+    }
+
+    private final List<Object[]> columns = new ArrayList<Object[]>();
+
+    private int rowCount;
+
+    /**
+     * The length of every column buffer
+     */
+    private int capacity;
+
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    public void build(Map<String, SheetData<?>> sheets, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            for (Entry<String, SheetData<?>> entry : sheets.entrySet()) {
+                SheetData<?> data = entry.getValue();
+                out.writeByte('S');
+                writeString(out, entry.getKey());
+                List<List<Cell>> headers = data.getHeaders();
+                List<String> names = new ArrayList<String>();
+                for (Cell cell : headers.get(headers.size() - 1)) {
+                    names.add(cell.value != null ? cell.value.toString() : "");
+                    for (int i = 1; i < cell.span; i++) {
+                        names.add("");
+                    }
+                }
+                out.writeInt(names.size());
+                for (String name : names) {
+                    writeString(out, name);
+                }
+                columns.clear();
+                rowCount = 0;
+                capacity = INITIAL_CAPACITY;
+                for (List<Cell> line : data.getRows()) {
+                    addRow(line);
+                    if (rowCount == ROW_GROUP_SIZE) {
+                        writeGroup(out);
+                    }
+                }
+                if (rowCount > 0) {
+                    writeGroup(out);
+                }
+            }
+            out.writeByte('E');
+        } finally {
+            deflater.end();
+            out.flush();
+            out.close();
+        }
+    }
+
+    private void addRow(List<Cell> line) {
+        if (rowCount == capacity) {
+            grow();
+        }
+        int column = 0;
+        for (Cell cell : line) {
+            if (column == columns.size()) {
+                columns.add(new Object[capacity]);
+            }
+            Object content = cell.value != null ? convert(column, cell.value) : null;
+            columns.get(column)[rowCount] = content instanceof Formula ? null : content;
+            column += Math.max(cell.span, (short) 1);
+            while (columns.size() < column) {
+                columns.add(new Object[capacity]);
+            }
+        }
+        rowCount++;
+    }
+
+    private void grow() {
+        capacity = Math.min(capacity * 2, ROW_GROUP_SIZE);
+        for (int i = 0; i < columns.size(); i++) {
+            Object[] grown = new Object[capacity];
+            System.arraycopy(columns.get(i), 0, grown, 0, rowCount);
+            columns.set(i, grown);
+        }
+    }
+
+    private void writeGroup(DataOutputStream out) throws IOException {
+        out.writeByte('G');
+        out.writeInt(rowCount);
+        out.writeInt(columns.size());
+        for (Object[] values : columns) {
+            writeChunk(out, values);
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = null;
+            }
+        }
+        rowCount = 0;
+    }
+
+    private static byte typeOf(Object value) {
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return LONG;
+        }
+        if (value instanceof Number) {
+            return DOUBLE;
+        }
+        if (value instanceof Date || value instanceof Calendar) {
+            return TIMESTAMP;
+        }
+        return STRING;
+    }
+
+    private static byte columnType(Object[] values, int rowCount) {
+        byte type = NULL;
+        for (int i = 0; i < rowCount; i++) {
+            if (values[i] != null) {
+                byte valueType = typeOf(values[i]);
+                if (type == NULL) {
+                    type = valueType;
+                } else if (type != valueType) {
+                    if ((type == LONG || type == DOUBLE) && (valueType == LONG || valueType == DOUBLE)) {
+                        type = DOUBLE;
+                    } else {
+                        return STRING;
+                    }
+                }
+            }
+        }
+        return type;
+    }
+
+    private void writeChunk(DataOutputStream out, Object[] values) throws IOException {
+        byte type = columnType(values, rowCount);
+        int nullCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (values[i] == null) {
+                nullCount++;
+            }
+        }
+        List<String> dictionary = null;
+        Map<String, Integer> dictionaryIndex = null;
+        if (type == STRING) {
+            dictionaryIndex = new HashMap<String, Integer>();
+            dictionary = new ArrayList<String>();
+            int limit = (rowCount - nullCount) / 2;
+            for (int i = 0; i < rowCount && dictionary != null; i++) {
+                if (values[i] != null) {
+                    String text = toText(values[i]);
+                    if (!dictionaryIndex.containsKey(text)) {
+                        if (dictionary.size() == limit) {
+                            dictionary = null;
+                            dictionaryIndex = null;
+                        } else {
+                            dictionaryIndex.put(text, dictionary.size());
+                            dictionary.add(text);
+                        }
+                    }
+                }
+            }
+        }
+        out.writeByte(type);
+        out.writeByte(dictionary != null ? DICTIONARY : PLAIN);
+        out.writeInt(nullCount);
+        if (nullCount < rowCount) {
+            writeStatistics(out, type, values);
+        }
+
+        chunk.reset();
+        deflater.reset();
+        DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(chunk, deflater, BUFFER_SIZE));
+        byte[] bitmap = new byte[(rowCount + 7) / 8];
+        for (int i = 0; i < rowCount; i++) {
+            if (values[i] != null) {
+                bitmap[i / 8] |= 1 << (i % 8);
+            }
+        }
+        data.write(bitmap);
+        if (type == BOOLEAN) {
+            int bits = 0;
+            int count = 0;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    if ((Boolean) values[i]) {
+                        bits |= 1 << count;
+                    }
+                    if (++count == 8) {
+                        data.writeByte(bits);
+                        bits = 0;
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                data.writeByte(bits);
+            }
+        } else if (type == STRING && dictionary != null) {
+            data.writeInt(dictionary.size());
+            for (String text : dictionary) {
+                writeString(data, text);
+            }
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    data.writeInt(dictionaryIndex.get(toText(values[i])));
+                }
+            }
+        } else {
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    switch (type) {
+                    case LONG:
+                        data.writeLong(((Number) values[i]).longValue());
+                        break;
+                    case DOUBLE:
+                        data.writeDouble(((Number) values[i]).doubleValue());
+                        break;
+                    case TIMESTAMP:
+                        data.writeLong(toMillis(values[i]));
+                        break;
+                    default:
+                        writeString(data, toText(values[i]));
+                    }
+                }
+            }
+        }
+        data.close();
+        out.writeInt(chunk.size());
+        chunk.writeTo(out);
+    }
+
+    private void writeStatistics(DataOutputStream out, byte type, Object[] values) throws IOException {
+        switch (type) {
+        case BOOLEAN: {
+            boolean min = true;
+            boolean max = false;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    boolean value = (Boolean) values[i];
+                    min &= value;
+                    max |= value;
+                }
+            }
+            out.writeByte(min ? 1 : 0);
+            out.writeByte(max ? 1 : 0);
+            break;
+        }
+        case LONG:
+        case TIMESTAMP: {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    long value = type == LONG ? ((Number) values[i]).longValue() : toMillis(values[i]);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            out.writeLong(min);
+            out.writeLong(max);
+            break;
+        }
+        case DOUBLE: {
+            double min = Double.NaN;
+            double max = Double.NaN;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    double value = ((Number) values[i]).doubleValue();
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    if (Double.isNaN(min) || value < min) {
+                        min = value;
+                    }
+                    if (Double.isNaN(max) || value > max) {
+                        max = value;
+                    }
+                }
+            }
+            out.writeDouble(min);
+            out.writeDouble(max);
+            break;
+        }
+        default: {
+            String min = null;
+            String max = null;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    String value = toText(values[i]);
+                    if (min == null || value.compareTo(min) < 0) {
+                        min = value;
+                    }
+                    if (max == null || value.compareTo(max) > 0) {
+                        max = value;
+                    }
+                }
+            }
+            writeString(out, min);
+            writeString(out, max);
+        }
+        }
+    }
+
+    private static long toMillis(Object value) {
+        return value instanceof Date ? ((Date) value).getTime() : ((Calendar) value).getTimeInMillis();
+    }
+
+    private static String toText(Object value) {
+        return value instanceof RichTextString ? ((RichTextString) value).getString() : value.toString();
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
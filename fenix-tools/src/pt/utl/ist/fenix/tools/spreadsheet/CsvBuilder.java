@@ -1,18 +1,17 @@
 package pt.utl.ist.fenix.tools.spreadsheet;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.YearMonthDay;
@@ -46,38 +45,106 @@ class CsvBuilder extends AbstractSheetBuilder {
         converters.putAll(BASE_CONVERTERS);
     }
 
+    static final String DEFAULT_ENCODING = "UTF-8";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private char[] chars = new char[256];
+
+    private int fields;
+
     public void build(Map<String, SheetData<?>> sheets, OutputStream output, String separator) throws IOException {
-        OutputStreamWriter writer = new OutputStreamWriter(output);
+        build(sheets, output, separator, DEFAULT_ENCODING);
+    }
+
+    /**
+     * Writes the sheets one line at a time, quoting fields as described in RFC 4180: fields containing the separator, quotes
+     * or line breaks are enclosed in quotes, and their quotes doubled.
+     */
+    public void build(Map<String, SheetData<?>> sheets, OutputStream output, String separator, String encoding)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, encoding), BUFFER_SIZE);
         try {
-            List<String> lines = new ArrayList<String>();
+            boolean first = true;
             for (SheetData<?> data : sheets.values()) {
-                if (!data.headers.get(0).isEmpty()) {
-                    for (List<Cell> headerRow : data.headers) {
-                        List<String> column = new ArrayList<String>();
+                if (!data.getHeaders().get(0).isEmpty()) {
+                    for (List<Cell> headerRow : data.getHeaders()) {
+                        startLine();
                         for (Cell cell : headerRow) {
-                            column.add(cell.value.toString());
-                            if (cell.span > 1) {
-                                column.addAll(Arrays.asList(new String[cell.span - 1]));
-                            }
+                            appendField(cell.value != null ? cell.value.toString() : null, cell.span, separator);
                         }
-                        lines.add(StringUtils.join(column, separator));
+                        writeLine(writer, first);
+                        first = false;
                     }
                 }
-                for (final List<Cell> line : data.matrix) {
-                    List<String> column = new ArrayList<String>();
-                    for (Cell cell : line) {
-                        column.add(cell.value != null ? convert(cell.value).toString().replace(separator, " ") : "");
-                        if (cell.span > 1) {
-                            column.addAll(Arrays.asList(new String[cell.span - 1]));
-                        }
+                for (final List<Cell> row : data.getRows()) {
+                    startLine();
+                    for (Cell cell : row) {
+                        appendField(cell.value != null ? convert(fields, cell.value).toString() : null, cell.span, separator);
                     }
-                    lines.add(StringUtils.join(column, separator));
+                    writeLine(writer, first);
+                    first = false;
                 }
             }
-            writer.write(StringUtils.join(lines, "\n"));
         } finally {
             writer.flush();
             writer.close();
         }
     }
+
+    private void startLine() {
+        line.setLength(0);
+        fields = 0;
+    }
+
+    private void appendField(String value, short span, String separator) {
+        if (fields++ > 0) {
+            line.append(separator);
+        }
+        if (value != null) {
+            if (needsQuotes(value, separator)) {
+                line.append('"');
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '"') {
+                        line.append('"');
+                    }
+                    line.append(c);
+                }
+                line.append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        for (int i = 1; i < span; i++) {
+            line.append(separator);
+            fields++;
+        }
+    }
+
+    private static boolean needsQuotes(String value, String separator) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return value.indexOf(separator) >= 0;
+    }
+
+    private void writeLine(Writer writer, boolean first) throws IOException {
+        if (!first) {
+            writer.write(LINE_SEPARATOR);
+        }
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
 }
@@ -1,52 +1,329 @@
 package pt.utl.ist.fenix.tools.spreadsheet;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.NoSuchElementException;
 
-import org.apache.commons.io.FileUtils;
+/**
+ * Streaming reader of CSV files as described in RFC 4180. The first record is taken as the header, and each following record
+ * is read as a {@link Row} whose values can be accessed by column index or by header name, without building a map per row.
+ * Quoted fields may contain separators, doubled quotes and line breaks. Empty lines are skipped.
+ *
+ * Rows can be pulled with {@link #next()}, iterated, or pushed to a {@link RowHandler} with {@link #read(RowHandler)}. Files
+ * can also be opened with {@link #openMapped(File, char, String)}, that reads them through a memory mapping instead of a
+ * stream.
+ */
+public class CsvReader implements Iterable<CsvReader.Row>, Closeable {
+    public static interface RowHandler {
+        public void handle(Row row) throws IOException;
+    }
 
-public class CsvReader {
-    public static List<Map<String, String>> readCsvFile(File file, String separator, String encoding) throws IOException {
-        List<String> lines = FileUtils.readLines(file, encoding);
-        List<String> header = null;
-        List<Map<String, String>> csvContent = new Vector<Map<String, String>>(lines.size());
-        for (String line : lines) {
-            String[] parts = line.split(separator);
-            if (header == null) {
-                header = new ArrayList<String>();
-                for (String part : parts) {
-                    header.add(cleanup(part));
+    public static class Row {
+        private final CsvReader reader;
+        private final String[] values;
+        private final long number;
+
+        private Row(CsvReader reader, String[] values, long number) {
+            this.reader = reader;
+            this.values = values;
+            this.number = number;
+        }
+
+        /**
+         * @return the value in the given column, or null if the row is shorter.
+         */
+        public String get(int index) {
+            return index < values.length ? values[index] : null;
+        }
+
+        /**
+         * @return the value in the column with the given header, or null if there is no such column or the row is shorter.
+         */
+        public String get(String column) {
+            int index = reader.getColumnIndex(column);
+            return index < 0 ? null : get(index);
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * @return the number of this row, counting from 1 at the first row after the header.
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public Map<String, String> toMap() {
+            List<String> header = reader.getHeader();
+            Map<String, String> map = new HashMap<String, String>(header.size());
+            for (int i = 0; i < header.size(); i++) {
+                map.put(header.get(i), get(i));
+            }
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char QUOTE = '"';
+
+    private enum State {
+        FIELD_START, UNQUOTED, QUOTED, QUOTE_IN_QUOTED
+    }
+
+    private final Reader reader;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> record = new ArrayList<String>();
+    private final List<String> header;
+    private final Map<String, Integer> headerIndex = new HashMap<String, Integer>();
+    private long rowNumber = 0;
+
+    public CsvReader(Reader reader, char separator) throws IOException {
+        this.reader = reader;
+        this.separator = separator;
+        String[] values = readRecord();
+        List<String> header = new ArrayList<String>();
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                String column = values[i].trim();
+                header.add(column);
+                if (!headerIndex.containsKey(column)) {
+                    headerIndex.put(column, i);
                 }
-            } else {
-                int index = 0;
-                Map<String, String> linemap = new HashMap<String, String>(header.size());
-                for (String column : header) {
-                    linemap.put(column, access(parts, index++));
+            }
+        }
+        this.header = Collections.unmodifiableList(header);
+    }
+
+    public static CsvReader open(File file, char separator, String encoding) throws IOException {
+        return new CsvReader(new InputStreamReader(new FileInputStream(file), encoding), separator);
+    }
+
+    /**
+     * Opens the file through a read-only memory mapping, which avoids copying it through stream buffers. Best suited to large
+     * local files.
+     */
+    public static CsvReader openMapped(File file, char separator, String encoding) throws IOException {
+        return new CsvReader(new MappedFileReader(file, encoding), separator);
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the index of the first column with the given header, or -1 if there is none.
+     */
+    public int getColumnIndex(String column) {
+        Integer index = headerIndex.get(column);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the next row, or null at the end of the file.
+     */
+    public Row next() throws IOException {
+        String[] values = readRecord();
+        return values != null ? new Row(this, values, ++rowNumber) : null;
+    }
+
+    /**
+     * Reads every remaining row into the handler, and closes the reader.
+     */
+    public void read(RowHandler handler) throws IOException {
+        try {
+            Row row;
+            while ((row = next()) != null) {
+                handler.handle(row);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Iterates the remaining rows. Read errors are thrown as {@link RuntimeException}s.
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            private Row next = advance();
+
+            private Row advance() {
+                try {
+                    return CsvReader.this.next();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
-                csvContent.add(linemap);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Row next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Row row = next;
+                next = advance();
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    /**
+     * Tokenizes the next non empty record. A quote only opens a quoted field at the start of the field, a quote in the
+     * middle of an unquoted field is kept as is, as are characters after a closing quote. A quoted field left open at the end
+     * of the file ends there.
+     */
+    private String[] readRecord() throws IOException {
+        record.clear();
+        field.setLength(0);
+        State state = State.FIELD_START;
+        while (true) {
+            if (position == limit && !fill()) {
+                if (state != State.FIELD_START || !record.isEmpty()) {
+                    record.add(field.toString());
+                }
+                break;
+            }
+            char c = buffer[position++];
+            switch (state) {
+            case FIELD_START:
+                if (c == QUOTE) {
+                    state = State.QUOTED;
+                } else if (c == separator) {
+                    record.add("");
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        skipLineFeed();
+                    }
+                    if (!record.isEmpty()) {
+                        record.add("");
+                        return toArray();
+                    }
+                } else {
+                    field.append(c);
+                    state = State.UNQUOTED;
+                }
+                break;
+            case UNQUOTED:
+            case QUOTE_IN_QUOTED:
+                if (c == separator) {
+                    endField();
+                    state = State.FIELD_START;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        skipLineFeed();
+                    }
+                    endField();
+                    return toArray();
+                } else if (c == QUOTE && state == State.QUOTE_IN_QUOTED) {
+                    field.append(QUOTE);
+                    state = State.QUOTED;
+                } else {
+                    field.append(c);
+                    state = State.UNQUOTED;
+                }
+                break;
+            case QUOTED:
+                if (c == QUOTE) {
+                    state = State.QUOTE_IN_QUOTED;
+                } else {
+                    field.append(c);
+                }
+                break;
             }
         }
-        return csvContent;
+        return record.isEmpty() ? null : toArray();
     }
 
-    private static String access(String[] parts, int index) {
-        if (parts.length <= index) {
-            return null;
+    private void skipLineFeed() throws IOException {
+        if ((position < limit || fill()) && buffer[position] == '\n') {
+            position++;
         }
-        return cleanup(parts[index]);
     }
 
-    private static String cleanup(String part) {
-        String value = part.trim();
-        if (value.startsWith("\"")) {
-            value = value.replaceAll("\"", "");
+    private void endField() {
+        record.add(field.toString());
+        field.setLength(0);
+    }
+
+    private String[] toArray() {
+        return record.toArray(new String[record.size()]);
+    }
+
+    /**
+     * Reads the whole file into a list of maps from header to value, with values trimmed. Prefer the streaming methods for
+     * large files.
+     *
+     * @param separator
+     *            a single character.
+     */
+    public static List<Map<String, String>> readCsvFile(File file, String separator, String encoding) throws IOException {
+        if (separator.length() != 1) {
+            throw new IllegalArgumentException("separator must be a single character: " + separator);
         }
-        return value.trim();
+        final List<Map<String, String>> csvContent = new ArrayList<Map<String, String>>();
+        final CsvReader reader = open(file, separator.charAt(0), encoding);
+        reader.read(new RowHandler() {
+            @Override
+            public void handle(Row row) {
+                Map<String, String> linemap = new HashMap<String, String>(reader.getHeader().size());
+                int index = 0;
+                for (String column : reader.getHeader()) {
+                    String value = row.get(index++);
+                    linemap.put(column, value != null ? value.trim() : null);
+                }
+                csvContent.add(linemap);
+            }
+        });
+        return csvContent;
     }
 
     public static File getFile(String... parts) {
@@ -96,14 +96,22 @@ class DocxBuilder extends AbstractSheetBuilder {
         converters.putAll(BASE_CONVERTERS);
     }
 
-    private XCellStyle headerStyle = HEADER_STYLE;
+    XCellStyle headerStyle = HEADER_STYLE;
 
-    private final Map<Class<?>, XCellStyle> typeStyles = new HashMap<Class<?>, XCellStyle>(TYPE_STYLES);
+    final Map<Class<?>, XCellStyle> typeStyles = new HashMap<Class<?>, XCellStyle>(TYPE_STYLES);
 
-    private List<XCellStyle> rowStyles = new ArrayList<XCellStyle>(ROW_STYLES);
+    List<XCellStyle> rowStyles = new ArrayList<XCellStyle>(ROW_STYLES);
 
     private XStyleCache styleCache;
 
+    private StyleTable<XSSFCellStyle> styleTable;
+
+    ColumnWidthMode columnWidthMode = ColumnWidthMode.EXACT;
+
+    int columnWidthSampleRows;
+
+    ColumnWidths columnWidths;
+
     int usefulAreaStart;
 
     int usefulAreaEnd;
@@ -127,20 +135,44 @@ class DocxBuilder extends AbstractSheetBuilder {
         rowStyles = Arrays.asList(styles);
     }
 
+    protected void setColumnWidthMode(ColumnWidthMode mode, int sampleRows) {
+        columnWidthMode = mode;
+        columnWidthSampleRows = sampleRows;
+    }
+
     protected void setValue(XSSFWorkbook book, XSSFCell cell, Object value, short span) {
-        XComposedCellStyle style = new XComposedCellStyle();
-        if (!rowStyles.isEmpty()) {
-            style.merge(rowStyles.get(cell.getRowIndex() % rowStyles.size()));
-        }
-        if (value != null && typeStyles.containsKey(value.getClass())) {
-            style.merge(typeStyles.get(value.getClass()));
-        }
-        setValue(book, cell, value, span, styleCache.getStyle(style));
+        setValue(book, cell, value, span, getCellStyle(cell.getRowIndex(), value));
+    }
+
+    XSSFCellStyle getCellStyle(int rowIndex, Object value) {
+        return styleTable.getStyle(rowIndex, value);
+    }
+
+    XSSFCellStyle getHeaderStyle() {
+        return styleCache.getStyle(headerStyle);
+    }
+
+    void initStyles(XSSFWorkbook book) {
+        styleCache = new XStyleCache(book);
+        styleTable = new StyleTable<XSSFCellStyle>(rowStyles.size(), typeStyles.keySet()) {
+            @Override
+            protected XSSFCellStyle resolve(int rowStyle, Class<?> type) {
+                XComposedCellStyle style = new XComposedCellStyle();
+                if (rowStyle >= 0) {
+                    style.merge(rowStyles.get(rowStyle));
+                }
+                if (type != null) {
+                    style.merge(typeStyles.get(type));
+                }
+                return styleCache.getStyle(style);
+            }
+        };
     }
 
     private void setValue(XSSFWorkbook book, XSSFCell cell, Object value, short span, XSSFCellStyle style) {
         if (value != null) {
-            Object content = convert(value);
+            Object content = convert(cell.getColumnIndex(), value);
+            columnWidths.measure(cell.getRowIndex(), cell.getColumnIndex(), span, content);
             if (content instanceof Boolean) {
                 cell.setCellValue((Boolean) content);
             } else if (content instanceof Double) {
@@ -160,6 +192,7 @@ class DocxBuilder extends AbstractSheetBuilder {
                 cell.setCellValue(content.toString());
             }
         } else {
+            columnWidths.measure(cell.getRowIndex(), cell.getColumnIndex(), span, null);
             cell.setCellValue((String) null);
         }
         if (span > 1) {
@@ -174,15 +207,16 @@ class DocxBuilder extends AbstractSheetBuilder {
     public void build(Map<String, SheetData<?>> sheets, OutputStream output) throws IOException {
         try {
             XSSFWorkbook book = new XSSFWorkbook();
-            styleCache = new XStyleCache(book);
+            initStyles(book);
             for (Entry<String, SheetData<?>> entry : sheets.entrySet()) {
                 final XSSFSheet sheet = book.createSheet(entry.getKey());
+                columnWidths = new ColumnWidths(columnWidthMode, columnWidthSampleRows);
                 int rownum = 0;
                 int colnum = 0;
 
                 SheetData<?> data = entry.getValue();
-                if (!data.headers.get(0).isEmpty()) {
-                    for (List<Cell> headerRow : data.headers) {
+                if (!data.getHeaders().get(0).isEmpty()) {
+                    for (List<Cell> headerRow : data.getHeaders()) {
                         colnum = 0;
                         final XSSFRow row = sheet.createRow(rownum++);
                         for (Cell cell : headerRow) {
@@ -192,7 +226,7 @@ class DocxBuilder extends AbstractSheetBuilder {
                     }
                 }
                 usefulAreaStart = rownum;
-                for (final List<Cell> line : data.matrix) {
+                for (final List<Cell> line : data.getRows()) {
                     colnum = 0;
                     final XSSFRow row = sheet.createRow(rownum++);
                     for (Cell cell : line) {
@@ -204,14 +238,12 @@ class DocxBuilder extends AbstractSheetBuilder {
                 if (data.hasFooter()) {
                     colnum = 0;
                     final XSSFRow row = sheet.createRow(rownum++);
-                    for (Cell cell : data.footer) {
+                    for (Cell cell : data.getFooter()) {
                         setValue(book, row.createCell(colnum++), cell.value, cell.span);
                         colnum = colnum + cell.span - 1;
                     }
                 }
-                for (int i = 0; i < sheet.getLastRowNum(); i++) {
-                    sheet.autoSizeColumn(i);
-                }
+                columnWidths.apply(sheet);
             }
             book.write(output);
         } finally {
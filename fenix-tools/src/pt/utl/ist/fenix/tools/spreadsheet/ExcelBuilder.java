@@ -101,6 +101,14 @@ class ExcelBuilder extends AbstractSheetBuilder {
 
     private StyleCache styleCache;
 
+    private StyleTable<HSSFCellStyle> styleTable;
+
+    private ColumnWidthMode columnWidthMode = ColumnWidthMode.EXACT;
+
+    private int columnWidthSampleRows;
+
+    private ColumnWidths columnWidths;
+
     int usefulAreaStart;
 
     int usefulAreaEnd;
@@ -124,20 +132,36 @@ class ExcelBuilder extends AbstractSheetBuilder {
         rowStyles = Arrays.asList(styles);
     }
 
+    protected void setColumnWidthMode(ColumnWidthMode mode, int sampleRows) {
+        columnWidthMode = mode;
+        columnWidthSampleRows = sampleRows;
+    }
+
     protected void setValue(HSSFWorkbook book, HSSFCell cell, Object value, short span) {
-        ComposedCellStyle style = new ComposedCellStyle();
-        if (!rowStyles.isEmpty()) {
-            style.merge(rowStyles.get(cell.getRowIndex() % rowStyles.size()));
-        }
-        if (value != null && typeStyles.containsKey(value.getClass())) {
-            style.merge(typeStyles.get(value.getClass()));
-        }
-        setValue(book, cell, value, span, styleCache.getStyle(style));
+        setValue(book, cell, value, span, styleTable.getStyle(cell.getRowIndex(), value));
+    }
+
+    private void initStyles(HSSFWorkbook book) {
+        styleCache = new StyleCache(book);
+        styleTable = new StyleTable<HSSFCellStyle>(rowStyles.size(), typeStyles.keySet()) {
+            @Override
+            protected HSSFCellStyle resolve(int rowStyle, Class<?> type) {
+                ComposedCellStyle style = new ComposedCellStyle();
+                if (rowStyle >= 0) {
+                    style.merge(rowStyles.get(rowStyle));
+                }
+                if (type != null) {
+                    style.merge(typeStyles.get(type));
+                }
+                return styleCache.getStyle(style);
+            }
+        };
     }
 
     private void setValue(HSSFWorkbook book, HSSFCell cell, Object value, short span, HSSFCellStyle style) {
         if (value != null) {
-            Object content = convert(value);
+            Object content = convert(cell.getColumnIndex(), value);
+            columnWidths.measure(cell.getRowIndex(), cell.getColumnIndex(), span, content);
             if (content instanceof Boolean) {
                 cell.setCellValue((Boolean) content);
             } else if (content instanceof Double) {
@@ -156,6 +180,7 @@ class ExcelBuilder extends AbstractSheetBuilder {
                 cell.setCellValue(content.toString());
             }
         } else {
+            columnWidths.measure(cell.getRowIndex(), cell.getColumnIndex(), span, null);
             cell.setCellValue((String) null);
         }
         if (span > 1) {
@@ -170,15 +195,16 @@ class ExcelBuilder extends AbstractSheetBuilder {
     public void build(Map<String, SheetData<?>> sheets, OutputStream output) throws IOException {
         try {
             HSSFWorkbook book = new HSSFWorkbook();
-            styleCache = new StyleCache(book);
+            initStyles(book);
             for (Entry<String, SheetData<?>> entry : sheets.entrySet()) {
                 final HSSFSheet sheet = book.createSheet(entry.getKey());
+                columnWidths = new ColumnWidths(columnWidthMode, columnWidthSampleRows);
                 int rownum = 0;
                 int colnum = 0;
 
                 SheetData<?> data = entry.getValue();
-                if (!data.headers.get(0).isEmpty()) {
-                    for (List<Cell> headerRow : data.headers) {
+                if (!data.getHeaders().get(0).isEmpty()) {
+                    for (List<Cell> headerRow : data.getHeaders()) {
                         colnum = 0;
                         final HSSFRow row = sheet.createRow(rownum++);
                         for (Cell cell : headerRow) {
@@ -188,7 +214,7 @@ class ExcelBuilder extends AbstractSheetBuilder {
                     }
                 }
                 usefulAreaStart = rownum;
-                for (final List<Cell> line : data.matrix) {
+                for (final List<Cell> line : data.getRows()) {
                     colnum = 0;
                     final HSSFRow row = sheet.createRow(rownum++);
                     for (Cell cell : line) {
@@ -200,14 +226,12 @@ class ExcelBuilder extends AbstractSheetBuilder {
                 if (data.hasFooter()) {
                     colnum = 0;
                     final HSSFRow row = sheet.createRow(rownum++);
-                    for (Cell cell : data.footer) {
+                    for (Cell cell : data.getFooter()) {
                         setValue(book, row.createCell(colnum++), cell.value, cell.span);
                         colnum = colnum + cell.span - 1;
                     }
                 }
-                for (int i = 0; i < sheet.getLastRowNum(); i++) {
-                    sheet.autoSizeColumn(i);
-                }
+                columnWidths.apply(sheet);
             }
             book.write(output);
         } finally {
@@ -38,25 +38,29 @@ public class Formula {
     }
 
     public String getFormula(HSSFCell cell, int usefulAreaStart, int usefulAreaEnd) {
+        return getFormula(cell.getRowIndex(), cell.getColumnIndex(), usefulAreaStart, usefulAreaEnd);
+    }
+
+    public String getFormula(int rowIndex, int columnIndex, int usefulAreaStart, int usefulAreaEnd) {
         String result = formula;
         if (result.contains("%col")) {
-            CellReference start = new CellReference(usefulAreaStart, cell.getColumnIndex());
-            CellReference end = new CellReference(usefulAreaEnd, cell.getColumnIndex());
+            CellReference start = new CellReference(usefulAreaStart, columnIndex);
+            CellReference end = new CellReference(usefulAreaEnd, columnIndex);
             result = result.replaceAll("%col", Matcher.quoteReplacement(start.formatAsString() + ":" + end.formatAsString()));
         }
         if (result.contains("%row")) {
             short startColumn = 0;
             if (formulaColumns == null) {
                 if (formulaSpan != 0) {
-                    startColumn = (short) (cell.getColumnIndex() - formulaSpan - 1);
+                    startColumn = (short) (columnIndex - formulaSpan - 1);
                 }
-                CellReference start = new CellReference(cell.getRowIndex(), startColumn);
-                CellReference end = new CellReference(cell.getRowIndex(), cell.getColumnIndex() - 1);
+                CellReference start = new CellReference(rowIndex, startColumn);
+                CellReference end = new CellReference(rowIndex, columnIndex - 1);
                 result = result.replaceAll("%row", Matcher.quoteReplacement(start.formatAsString() + ":" + end.formatAsString()));
             } else {
                 List<String> parts = new ArrayList<String>();
                 for (short col : formulaColumns) {
-                    parts.add(new CellReference(cell.getRowIndex(), col).formatAsString());
+                    parts.add(new CellReference(rowIndex, col).formatAsString());
                 }
                 result = result.replaceAll("%row", Matcher.quoteReplacement(StringUtils.join(parts, ", ")));
             }
@@ -0,0 +1,17 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+/**
+ * A {@link SheetData} whose lines are only made as the sheet is written, instead of all at construction time. Use it in the
+ * same way, typically with an iterator over domain objects, to export large sheets without holding every line in memory.
+ * 
+ * The items are iterated once and the rows can only be written once, so a lazy sheet must not be built twice. Headers are
+ * still collected from the first line and the footer from the last one.
+ * 
+ * @param <Item>
+ *            Type of object that will be used to populate cells.
+ */
+public abstract class LazySheetData<Item> extends SheetData<Item> {
+    public LazySheetData(Iterable<Item> items) {
+        super(items, true);
+    }
+}
@@ -0,0 +1,78 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader that decodes a file through read-only memory mappings of up to {@link #REGION_SIZE} bytes each, so files larger
+ * than the address limit of a single mapping can still be read.
+ */
+class MappedFileReader extends Reader {
+    private static final long REGION_SIZE = 64L * 1024 * 1024;
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder;
+    private MappedByteBuffer bytes;
+    private long regionStart = 0;
+    private boolean flushed = false;
+
+    public MappedFileReader(File file, String encoding) throws IOException {
+        this.input = new FileInputStream(file);
+        this.channel = input.getChannel();
+        this.size = channel.size();
+        this.decoder = Charset.forName(encoding).newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        map();
+    }
+
+    private void map() throws IOException {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(REGION_SIZE, size - regionStart));
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            boolean last = regionStart + bytes.limit() >= size;
+            CoderResult result = decoder.decode(bytes, out, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (out.position() > off) {
+                return out.position() - off;
+            }
+            if (last) {
+                decoder.flush(out);
+                flushed = true;
+                return out.position() > off ? out.position() - off : -1;
+            }
+            // a character may be split across regions, so the next one starts at the first byte not decoded
+            regionStart += bytes.position();
+            map();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        bytes = null;
+        channel.close();
+        input.close();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Representation of a sheet of data. Override this class (suggestion: use
@@ -12,7 +13,8 @@ import java.util.List;
  * given an Item object, a list of these is passed onto the constructor who in
  * turn calls the {@link #makeLine(Object)}. Optionally you may override
  * the {@link #filter(Object)} method to filter any undesirable items present
- * in the list.
+ * in the list. For large sheets see {@link LazySheetData}, which makes the
+ * lines as they are written.
  * 
  * @author Pedro Santos (pedro.miguel.santos@ist.utl.pt), Gil Lacerda (gil.lacerda@tecnico.ulisboa.pt)
  * 
@@ -36,37 +38,128 @@ public abstract class SheetData<Item> {
     private boolean isHeader;
     private boolean isFooter;
     private List<Cell> current;
+    private final Iterator<Item> iterator;
+    private Item next;
+    private boolean lazy;
+    private List<Cell> firstLine;
+    private boolean consumed = false;
 
     public SheetData(Iterable<Item> items) {
+        this(items, false);
+        List<Cell> line;
+        while ((line = nextLine()) != null) {
+            matrix.add(line);
+        }
+    }
+
+    SheetData(Iterable<Item> items, boolean lazy) {
         isFooter = false;
         isHeader = true;
         headers.add(new ArrayList<Cell>());
-        Iterator<Item> iterator = items.iterator();
-        Item curr = null;
-        Item prev = null;
-        boolean include = false;
+        this.lazy = lazy;
+        this.iterator = items.iterator();
+    }
+
+    private Item nextIncluded() {
         while (iterator.hasNext()) {
-            do {
-                curr = iterator.next();
-                include = filter(curr);
-            } while (!include && iterator.hasNext());
-            if (include) {
-                if (prev != null) {
-                    current = new ArrayList<Cell>();
-                    makeLine(prev);
-                    matrix.add(current);
-                    isHeader = false;
-                }
-                prev = curr;
+            Item item = iterator.next();
+            if (item != null && filter(item)) {
+                return item;
             }
         }
-        if (prev != null) {
-            isFooter = true;
-            current = new ArrayList<Cell>();
-            makeLine(prev);
-            matrix.add(current);
+        return null;
+    }
+
+    /**
+     * Makes the line of the next included item, or returns null when there are no more items. The item after it is looked up
+     * in advance, since the footer is collected while making the last line.
+     */
+    private List<Cell> nextLine() {
+        Item item = next != null ? next : (isHeader ? nextIncluded() : null);
+        if (item == null) {
+            return null;
         }
-        Collections.reverse(headers);
+        next = nextIncluded();
+        isFooter = next == null;
+        current = new ArrayList<Cell>();
+        makeLine(item);
+        if (isHeader) {
+            isHeader = false;
+            Collections.reverse(headers);
+        }
+        return current;
+    }
+
+    /**
+     * The header rows, from top to bottom. Headers are collected while making the first line, so in a lazy sheet the first
+     * line is made, and kept, when they are first asked for.
+     */
+    List<List<Cell>> getHeaders() {
+        if (lazy && isHeader && firstLine == null) {
+            firstLine = nextLine();
+        }
+        return headers;
+    }
+
+    /**
+     * The data lines. A lazy sheet makes each line as it is iterated, and can only be iterated once.
+     */
+    Iterable<List<Cell>> getRows() {
+        if (!lazy) {
+            return matrix;
+        }
+        if (consumed) {
+            throw new IllegalStateException("The rows of a lazy sheet can only be read once");
+        }
+        consumed = true;
+        return new Iterable<List<Cell>>() {
+            @Override
+            public Iterator<List<Cell>> iterator() {
+                return new Iterator<List<Cell>>() {
+                    private List<Cell> line = firstLine != null ? firstLine : nextLine();
+
+                    @Override
+                    public boolean hasNext() {
+                        return line != null;
+                    }
+
+                    @Override
+                    public List<Cell> next() {
+                        if (line == null) {
+                            throw new NoSuchElementException();
+                        }
+                        List<Cell> result = line;
+                        firstLine = null;
+                        line = nextLine();
+                        return result;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Makes every line of a lazy sheet now, after which it is written as an eager one.
+     */
+    void makeLines() {
+        if (lazy) {
+            for (List<Cell> line : getRows()) {
+                matrix.add(line);
+            }
+            lazy = false;
+        }
+    }
+
+    /**
+     * The footer cells. In a lazy sheet they are only known after all rows were read.
+     */
+    List<Cell> getFooter() {
+        return footer;
     }
 
     /**
@@ -7,9 +7,14 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import pt.utl.ist.fenix.tools.spreadsheet.converters.CellConverter;
 import pt.utl.ist.fenix.tools.spreadsheet.styles.CellStyle;
@@ -17,8 +22,8 @@ import pt.utl.ist.fenix.tools.spreadsheet.styles.ICellStyle;
 import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XCellStyle;
 
 /**
- * Builder for all kinds of Spreadsheets (currently supports excel, csv, and
- * tsv). Basically, given a format, and a set of {@link SheetData}s it
+ * Builder for all kinds of Spreadsheets (currently supports excel, xlsx, csv,
+ * tsv and a columnar binary format). Basically, given a format, and a set of {@link SheetData}s it
  * constructs a spreadsheet in the specified {@link OutputStream}.
  * 
  * It can be further customized with {@link CellConverter}s, and {@link CellStyle}s (that are only useful in the excel format). A
@@ -30,19 +35,25 @@ import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XCellStyle;
  * @author Pedro Santos (pedro.miguel.santos@ist.utl.pt)
  */
 public class SpreadsheetBuilder {
-    private Map<String, SheetData<?>> sheets = new HashMap<String, SheetData<?>>();
+    private static final int DEFAULT_SAMPLE_ROWS = 100;
+
+    private Map<String, SheetData<?>> sheets = new LinkedHashMap<String, SheetData<?>>();
     private final Map<Class<?>, CellConverter> converters = new HashMap<Class<?>, CellConverter>();
     private ICellStyle headerStyle = null;
     private ICellStyle mergeHeaderStyle = null;
     private final Map<Class<?>, ICellStyle> typeStyles = new HashMap<Class<?>, ICellStyle>();
     private List<ICellStyle> rowStyles = new ArrayList<ICellStyle>();
+    private String encoding = CsvBuilder.DEFAULT_ENCODING;
+    private ColumnWidthMode columnWidthMode = ColumnWidthMode.EXACT;
+    private int columnWidthSampleRows = DEFAULT_SAMPLE_ROWS;
+    private int parallelism = 1;
 
     public SpreadsheetBuilder() {
     }
 
     /**
      * Adds a sheet to the resulting work. You need at least one to have
-     * something useful.
+     * something useful. Sheets are written in the order they are added.
      * 
      * @param name
      *            The name of the sheet.
@@ -122,6 +133,61 @@ public class SpreadsheetBuilder {
         return this;
     }
 
+    /**
+     * Sets the character encoding of the csv and tsv formats, UTF-8 by default.
+     * 
+     * @param encoding
+     *            The name of the charset
+     * @return this.
+     */
+    public SpreadsheetBuilder setEncoding(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    /**
+     * Sets how columns are sized in the excel and xlsx formats, {@link ColumnWidthMode#EXACT} by default. The sampled mode
+     * looks at the first 100 rows of each sheet.
+     * 
+     * @param mode
+     *            The column width mode
+     * @return this.
+     */
+    public SpreadsheetBuilder setColumnWidthMode(ColumnWidthMode mode) {
+        return setColumnWidthMode(mode, DEFAULT_SAMPLE_ROWS);
+    }
+
+    /**
+     * Sets how columns are sized in the excel and xlsx formats.
+     * 
+     * @param mode
+     *            The column width mode
+     * @param sampleRows
+     *            The number of rows, headers included, looked at by the sampled mode
+     * @return this.
+     */
+    public SpreadsheetBuilder setColumnWidthMode(ColumnWidthMode mode, int sampleRows) {
+        columnWidthMode = mode;
+        columnWidthSampleRows = sampleRows;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to make the lines of {@link LazySheetData} sheets before writing them. With more than
+     * one, the lines of each lazy sheet are made concurrently, on a pool of at most this many threads, and the sheets are
+     * then written in the order they were added, giving the same output as a serial build. The lines of every lazy sheet are
+     * held in memory until written, and their makeLine methods must be safe to run outside the calling thread. Sheets made
+     * with {@link SheetData} already have their lines. Serial by default.
+     * 
+     * @param threads
+     *            The maximum number of threads
+     * @return this.
+     */
+    public SpreadsheetBuilder setParallelism(int threads) {
+        parallelism = threads;
+        return this;
+    }
+
     /**
      * Writes the data sets in the specified file.
      * 
@@ -161,6 +227,9 @@ public class SpreadsheetBuilder {
      *             if and error occurs while writing.
      */
     public void build(WorkbookExportFormat format, OutputStream output) throws IOException {
+        if (parallelism > 1) {
+            makeLines();
+        }
         switch (format) {
         case EXCEL: {
             ExcelBuilder builder = new ExcelBuilder();
@@ -177,6 +246,7 @@ public class SpreadsheetBuilder {
                 builder.addTypeStyle(entry.getKey(), (CellStyle) entry.getValue());
             }
             builder.setRowStyle(rowStyles.toArray(new CellStyle[0]));
+            builder.setColumnWidthMode(columnWidthMode, columnWidthSampleRows);
             builder.build(sheets, output);
             break;
         }
@@ -186,29 +256,90 @@ public class SpreadsheetBuilder {
             for (Entry<Class<?>, CellConverter> entry : converters.entrySet()) {
                 builder.addConverter(entry.getKey(), entry.getValue());
             }
-            builder.build(sheets, output, format.getSeparator());
+            builder.build(sheets, output, format.getSeparator(), encoding);
             break;
         }
-        case DOCX:
+        case DOCX: {
             DocxBuilder builder = new DocxBuilder();
+            configure(builder);
+            builder.build(sheets, output);
+            break;
+        }
+        case XLSX: {
+            StreamingXlsxBuilder builder = new StreamingXlsxBuilder();
+            configure(builder);
+            builder.build(sheets, output);
+            break;
+        }
+        case COLUMNAR: {
+            ColumnarBuilder builder = new ColumnarBuilder();
             for (Entry<Class<?>, CellConverter> entry : converters.entrySet()) {
                 builder.addConverter(entry.getKey(), entry.getValue());
             }
-            if (headerStyle != null) {
-                builder.setHeaderStyle((XCellStyle) headerStyle);
-            }
-            if (mergeHeaderStyle != null) {
-                builder.appendHeaderStyle((XCellStyle) mergeHeaderStyle);
-            }
-            for (Entry<Class<?>, ICellStyle> entry : typeStyles.entrySet()) {
-                builder.addTypeStyle(entry.getKey(), (XCellStyle) entry.getValue());
-            }
-            builder.setRowStyle(rowStyles.toArray(new XCellStyle[0]));
             builder.build(sheets, output);
             break;
-
+        }
         default:
             break;
         }
     }
+
+    private void makeLines() {
+        List<SheetData<?>> lazySheets = new ArrayList<SheetData<?>>();
+        for (SheetData<?> sheet : sheets.values()) {
+            if (sheet instanceof LazySheetData) {
+                lazySheets.add(sheet);
+            }
+        }
+        if (lazySheets.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, lazySheets.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final SheetData<?> sheet : lazySheets) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        sheet.makeLines();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void configure(DocxBuilder builder) {
+        for (Entry<Class<?>, CellConverter> entry : converters.entrySet()) {
+            builder.addConverter(entry.getKey(), entry.getValue());
+        }
+        if (headerStyle != null) {
+            builder.setHeaderStyle((XCellStyle) headerStyle);
+        }
+        if (mergeHeaderStyle != null) {
+            builder.appendHeaderStyle((XCellStyle) mergeHeaderStyle);
+        }
+        for (Entry<Class<?>, ICellStyle> entry : typeStyles.entrySet()) {
+            builder.addTypeStyle(entry.getKey(), (XCellStyle) entry.getValue());
+        }
+        builder.setRowStyle(rowStyles.toArray(new XCellStyle[0]));
+        builder.setColumnWidthMode(columnWidthMode, columnWidthSampleRows);
+    }
 }
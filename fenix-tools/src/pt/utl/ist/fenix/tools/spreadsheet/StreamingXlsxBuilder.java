@@ -0,0 +1,333 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import pt.utl.ist.fenix.tools.spreadsheet.SheetData.Cell;
+
+/**
+ * Writes the same workbooks as {@link DocxBuilder}, but in constant memory. Instead of building every row in an
+ * {@link XSSFWorkbook}, the rows of each sheet are written as SpreadsheetML straight into a temporary file, through a buffer
+ * that is flushed to disk as it fills. The workbook is only used as a template holding the sheet names and the styles; once
+ * all sheets are written it is saved and its empty sheet parts are swapped for the temporary files while copying the package
+ * to the output.
+ * 
+ * Strings are written inline rather than through the shared strings table, which would otherwise have to be held in memory.
+ * Columns can't be sized exactly, since that requires every cell to be in memory, so {@link ColumnWidthMode#EXACT} is
+ * estimated from all the cells instead.
+ */
+class StreamingXlsxBuilder extends DocxBuilder {
+    private static final String ENCODING = "UTF-8";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<File> temporaryFiles = new ArrayList<File>();
+
+    @Override
+    public void build(Map<String, SheetData<?>> sheets, OutputStream output) throws IOException {
+        try {
+            XSSFWorkbook book = new XSSFWorkbook();
+            initStyles(book);
+            Map<String, SheetPart> parts = new HashMap<String, SheetPart>();
+            for (Entry<String, SheetData<?>> entry : sheets.entrySet()) {
+                final XSSFSheet sheet = book.createSheet(entry.getKey());
+                SheetPart part = new SheetPart(createTemporaryFile(), createTemporaryFile());
+                try {
+                    writeSheet(entry.getValue(), part);
+                } finally {
+                    part.close();
+                }
+                parts.put(sheet.getPackagePart().getPartName().getName().substring(1), part);
+            }
+            File template = createTemporaryFile();
+            OutputStream templateOutput = new FileOutputStream(template);
+            try {
+                book.write(templateOutput);
+            } finally {
+                templateOutput.close();
+            }
+            assemble(template, parts, output);
+        } finally {
+            for (File file : temporaryFiles) {
+                file.delete();
+            }
+            temporaryFiles.clear();
+            output.flush();
+            output.close();
+        }
+    }
+
+    private File createTemporaryFile() throws IOException {
+        File file = File.createTempFile("spreadsheet", ".xml");
+        temporaryFiles.add(file);
+        return file;
+    }
+
+    private void writeSheet(SheetData<?> data, SheetPart part) throws IOException {
+        columnWidths =
+                new ColumnWidths(columnWidthMode == ColumnWidthMode.EXACT ? ColumnWidthMode.ESTIMATED : columnWidthMode,
+                        columnWidthSampleRows);
+        part.columnWidths = columnWidths;
+        int rownum = 0;
+        if (!data.getHeaders().get(0).isEmpty()) {
+            int headerStyle = getHeaderStyle().getIndex();
+            for (List<Cell> headerRow : data.getHeaders()) {
+                writeRow(part, rownum++, headerRow, headerStyle);
+            }
+        }
+        usefulAreaStart = rownum;
+        Iterable<List<Cell>> rows = data.getRows();
+        if (rows instanceof Collection) {
+            usefulAreaEnd = usefulAreaStart + ((Collection<?>) rows).size() - 1;
+        }
+        for (final List<Cell> line : rows) {
+            writeRow(part, rownum++, line, -1);
+        }
+        usefulAreaEnd = rownum - 1;
+        if (data.hasFooter()) {
+            writeRow(part, rownum++, data.getFooter(), -1);
+        }
+    }
+
+    /**
+     * @param style the style index of every cell in the row, or -1 to resolve it per cell from the row and type styles.
+     */
+    private void writeRow(SheetPart part, int rowIndex, List<Cell> cells, int style) throws IOException {
+        Writer writer = part.rows;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(rowIndex + 1));
+        writer.write("\">");
+        int colnum = 0;
+        for (Cell cell : cells) {
+            int cellStyle = style >= 0 ? style : getCellStyle(rowIndex, cell.value).getIndex();
+            writeCell(writer, rowIndex, colnum, cell.value, cell.span, cellStyle);
+            if (cell.span > 1) {
+                part.merge(rowIndex, colnum, colnum + cell.span - 1);
+            }
+            colnum += cell.span;
+        }
+        writer.write("</row>\n");
+    }
+
+    private void writeCell(Writer writer, int rowIndex, int columnIndex, Object value, short span, int style)
+            throws IOException {
+        writer.write("<c r=\"");
+        writer.write(CellReference.convertNumToColString(columnIndex));
+        writer.write(Integer.toString(rowIndex + 1));
+        writer.write("\" s=\"");
+        writer.write(Integer.toString(style));
+        if (value == null) {
+            columnWidths.measure(rowIndex, columnIndex, span, null);
+            writer.write("\"/>");
+            return;
+        }
+        Object content = convert(columnIndex, value);
+        columnWidths.measure(rowIndex, columnIndex, span, content);
+        if (content instanceof Boolean) {
+            writer.write("\" t=\"b\"><v>");
+            writer.write(((Boolean) content).booleanValue() ? "1" : "0");
+            writer.write("</v></c>");
+        } else if (content instanceof Double && !((Double) content).isNaN() && !((Double) content).isInfinite()) {
+            writeNumber(writer, (Double) content);
+        } else if (content instanceof Calendar) {
+            writeNumber(writer, DateUtil.getExcelDate((Calendar) content, false));
+        } else if (content instanceof Date) {
+            writeNumber(writer, DateUtil.getExcelDate((Date) content));
+        } else if (content instanceof Formula) {
+            writer.write("\"><f>");
+            writeEscaped(writer, ((Formula) content).getFormula(rowIndex, columnIndex, usefulAreaStart, usefulAreaEnd));
+            writer.write("</f></c>");
+        } else {
+            String text = content instanceof RichTextString ? ((RichTextString) content).getString() : content.toString();
+            writer.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+            writeEscaped(writer, text);
+            writer.write("</t></is></c>");
+        }
+    }
+
+    private static void writeNumber(Writer writer, double number) throws IOException {
+        writer.write("\"><v>");
+        writer.write(Double.toString(number));
+        writer.write("</v></c>");
+    }
+
+    static void writeEscaped(Writer writer, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                writer.write("&lt;");
+                break;
+            case '>':
+                writer.write("&gt;");
+                break;
+            case '&':
+                writer.write("&amp;");
+                break;
+            case '"':
+                writer.write("&quot;");
+                break;
+            default:
+                // control characters other than tab and line breaks are not allowed in XML 1.0
+                if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                    writer.write(c);
+                }
+            }
+        }
+    }
+
+    private void assemble(File template, Map<String, SheetPart> parts, OutputStream output) throws IOException {
+        ZipFile zip = new ZipFile(template);
+        try {
+            ZipOutputStream zipOutput = new ZipOutputStream(output);
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                zipOutput.putNextEntry(new ZipEntry(entry.getName()));
+                SheetPart part = parts.get(entry.getName());
+                if (part != null) {
+                    part.writeTo(zipOutput);
+                } else {
+                    InputStream input = zip.getInputStream(entry);
+                    try {
+                        copy(input, zipOutput);
+                    } finally {
+                        input.close();
+                    }
+                }
+                zipOutput.closeEntry();
+            }
+            zipOutput.finish();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * The rows and the merged regions of a sheet, each in its own temporary file, since merged regions must be written after
+     * all rows.
+     */
+    private static class SheetPart {
+        private final File rowsFile;
+
+        private final File mergesFile;
+
+        private final Writer rows;
+
+        private final Writer merges;
+
+        private int mergeCount = 0;
+
+        private ColumnWidths columnWidths;
+
+        private SheetPart(File rowsFile, File mergesFile) throws IOException {
+            this.rowsFile = rowsFile;
+            this.mergesFile = mergesFile;
+            this.rows = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rowsFile), ENCODING), BUFFER_SIZE);
+            this.merges = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mergesFile), ENCODING), BUFFER_SIZE);
+        }
+
+        private void merge(int rowIndex, int firstColumn, int lastColumn) throws IOException {
+            merges.write("<mergeCell ref=\"");
+            merges.write(CellReference.convertNumToColString(firstColumn));
+            merges.write(Integer.toString(rowIndex + 1));
+            merges.write(':');
+            merges.write(CellReference.convertNumToColString(lastColumn));
+            merges.write(Integer.toString(rowIndex + 1));
+            merges.write("\"/>");
+            mergeCount++;
+        }
+
+        private void close() throws IOException {
+            rows.close();
+            merges.close();
+        }
+
+        private void writeTo(OutputStream output) throws IOException {
+            Writer writer = new OutputStreamWriter(output, ENCODING);
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+            writer.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" ");
+            writer.write("xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">");
+            writeColumns(writer);
+            writer.write("<sheetData>\n");
+            writer.flush();
+            copyFile(rowsFile, output);
+            writer.write("</sheetData>");
+            if (mergeCount > 0) {
+                writer.write("<mergeCells count=\"");
+                writer.write(Integer.toString(mergeCount));
+                writer.write("\">");
+                writer.flush();
+                copyFile(mergesFile, output);
+                writer.write("</mergeCells>");
+            }
+            writer.write("</worksheet>");
+            writer.flush();
+        }
+
+        private void writeColumns(Writer writer) throws IOException {
+            boolean open = false;
+            for (int i = 0; i < columnWidths.getColumnCount(); i++) {
+                int width = columnWidths.getCharacters(i);
+                if (width > 0) {
+                    if (!open) {
+                        writer.write("<cols>");
+                        open = true;
+                    }
+                    writer.write("<col min=\"");
+                    writer.write(Integer.toString(i + 1));
+                    writer.write("\" max=\"");
+                    writer.write(Integer.toString(i + 1));
+                    writer.write("\" width=\"");
+                    writer.write(Integer.toString(width));
+                    writer.write("\" customWidth=\"1\"/>");
+                }
+            }
+            if (open) {
+                writer.write("</cols>");
+            }
+        }
+
+        private static void copyFile(File file, OutputStream output) throws IOException {
+            InputStream input = new FileInputStream(file);
+            try {
+                copy(input, output);
+            } finally {
+                input.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table of the workbook styles of each combination of row style and type style. Each combination is resolved once per
+ * workbook, the first time a cell needs it, so the style of a cell is found with an array lookup instead of composing and
+ * hashing a new style for every cell.
+ *
+ * @param <S>
+ *            the workbook cell style type.
+ */
+abstract class StyleTable<S> {
+    private final int rowStyleCount;
+
+    private final List<Class<?>> types;
+
+    private final Map<Class<?>, Integer> typeIds = new HashMap<Class<?>, Integer>();
+
+    private final Object[] table;
+
+    StyleTable(int rowStyleCount, Set<Class<?>> types) {
+        this.rowStyleCount = rowStyleCount;
+        this.types = new ArrayList<Class<?>>(types);
+        for (int i = 0; i < this.types.size(); i++) {
+            typeIds.put(this.types.get(i), i + 1);
+        }
+        this.table = new Object[Math.max(rowStyleCount, 1) * (this.types.size() + 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    S getStyle(int rowIndex, Object value) {
+        int rowStyle = rowStyleCount == 0 ? -1 : rowIndex % rowStyleCount;
+        int typeId = 0;
+        if (value != null) {
+            Integer id = typeIds.get(value.getClass());
+            if (id != null) {
+                typeId = id;
+            }
+        }
+        int slot = Math.max(rowStyle, 0) * (types.size() + 1) + typeId;
+        if (table[slot] == null) {
+            table[slot] = resolve(rowStyle, typeId == 0 ? null : types.get(typeId - 1));
+        }
+        return (S) table[slot];
+    }
+
+    /**
+     * Creates, or finds in the workbook style cache, the style of cells with the given row style and value type.
+     *
+     * @param rowStyle
+     *            the index of the row style, or -1 if there are none.
+     * @param type
+     *            the type with a type style, or null if the value has none.
+     */
+    protected abstract S resolve(int rowStyle, Class<?> type);
+}
@@ -1,12 +1,14 @@
 package pt.utl.ist.fenix.tools.spreadsheet;
 
 /**
- * Spreadsheet formats supported by {@link SpreadsheetBuilder}.
+ * Spreadsheet formats supported by {@link SpreadsheetBuilder}. DOCX and XLSX both produce Office Open XML workbooks, the
+ * latter written row by row in constant memory, for exports too large to be built in memory. COLUMNAR is a typed, compressed
+ * binary format for loading into analysis tools, described in {@link ColumnarBuilder}.
  * 
  * @author Pedro Santos (pedro.miguel.santos@ist.utl.pt)
  */
 public enum WorkbookExportFormat {
-    EXCEL, CSV(","), TSV("\t"), DOCX;
+    EXCEL, CSV(","), TSV("\t"), DOCX, XLSX, COLUMNAR;
 
     private String separator;
 
@@ -4,18 +4,22 @@
  */
 package pt.utl.ist.fenix.tools.util.excel;
 
-import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFCellStyle;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
@@ -92,10 +96,18 @@ public class Spreadsheet {
         }
     }
 
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+
     private String name;
 
     private final List<Object> headers;
 
+    /**
+     * Position of each header name, checked against {@link #headers} before use since the list can be changed through
+     * {@link #getHeader()} or shifted by {@link #setHeader(int, String)}.
+     */
+    private final Map<Object, Integer> headerIndex = new HashMap<Object, Integer>();
+
     private List<Row> rows = new ArrayList<Row>();
 
     private Spreadsheet next = null;
@@ -122,15 +134,26 @@ public class Spreadsheet {
     }
 
     private int getHeaderIndex(final String header) {
-        int i = 0;
-        for (final Object o : headers) {
-            if (header.equals(o)) {
-                return i;
+        Integer index = headerIndex.get(header);
+        if (index == null || index >= headers.size() || !header.equals(headers.get(index))) {
+            indexHeaders();
+            index = headerIndex.get(header);
+            if (index == null) {
+                index = headers.size();
+                setHeader(header);
+            }
+        }
+        return index;
+    }
+
+    private void indexHeaders() {
+        headerIndex.clear();
+        for (int i = 0; i < headers.size(); i++) {
+            final Object header = headers.get(i);
+            if (header != null && !headerIndex.containsKey(header)) {
+                headerIndex.put(header, i);
             }
-            i++;
         }
-        setHeader(header);
-        return i;
     }
 
     protected String getName() {
@@ -150,10 +173,14 @@ public class Spreadsheet {
             headers.add("");
         }
         headers.add(columnNumber, columnHeader);
+        headerIndex.clear();
         return this;
     }
 
     public Spreadsheet setHeader(final String columnHeader) {
+        if (columnHeader != null && !headerIndex.containsKey(columnHeader)) {
+            headerIndex.put(columnHeader, headers.size());
+        }
         headers.add(columnHeader);
         return this;
     }
@@ -196,37 +223,36 @@ public class Spreadsheet {
 
     public void exportToCSV(final OutputStream outputStream, final String columnSeperator, final String lineSepeator)
             throws IOException {
-        exportCSVLine(outputStream, columnSeperator, lineSepeator, headers);
+        exportToCSV(outputStream, columnSeperator, lineSepeator, Charset.defaultCharset().name());
+    }
+
+    /**
+     * Writes the headers and rows through a buffered writer in the given encoding. The stream is flushed but not closed.
+     */
+    public void exportToCSV(final OutputStream outputStream, final String columnSeperator, final String lineSepeator,
+            final String encoding) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, encoding), CSV_BUFFER_SIZE);
+        exportCSVLine(writer, columnSeperator, lineSepeator, headers);
         for (final Row row : rows) {
-            exportCSVLine(outputStream, columnSeperator, lineSepeator, row.getCells());
+            exportCSVLine(writer, columnSeperator, lineSepeator, row.cells);
         }
+        writer.flush();
     }
 
     public void exportToCSV(final File file, final String columnSeperator) throws IOException {
-        BufferedOutputStream outputStream = null;
-        try {
-            outputStream = new BufferedOutputStream(new FileOutputStream(file));
-            exportToCSV(outputStream, columnSeperator);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }
+        exportToCSV(file, columnSeperator, "\n");
     }
 
     public void exportToCSV(final File file, final String columnSeperator, final String lineSepeator) throws IOException {
-        BufferedOutputStream outputStream = null;
+        exportToCSV(file, columnSeperator, lineSepeator, Charset.defaultCharset().name());
+    }
+
+    public void exportToCSV(final File file, final String columnSeperator, final String lineSepeator, final String encoding)
+            throws IOException {
+        OutputStream outputStream = null;
         try {
-            outputStream = new BufferedOutputStream(new FileOutputStream(file));
-            exportToCSV(outputStream, columnSeperator, lineSepeator);
+            outputStream = new FileOutputStream(file);
+            exportToCSV(outputStream, columnSeperator, lineSepeator, encoding);
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -242,24 +268,21 @@ public class Spreadsheet {
         }
     }
 
-    private void exportCSVLine(final OutputStream outputStream, final String columnSeperator, final String lineSepeator,
+    private void exportCSVLine(final Writer writer, final String columnSeperator, final String lineSepeator,
             final List<Object> cells) throws IOException {
-        final byte[] columnSeperatorAsBytes = columnSeperator.getBytes();
-
         for (int i = 0; i < cells.size(); i++) {
             final Object cellValue = cells.get(i);
 
             if (i > 0) {
-                outputStream.write(columnSeperatorAsBytes);
+                writer.write(columnSeperator);
             }
 
-            if (cellValue == null) {
-                outputStream.write(StringUtils.EMPTY.getBytes());
-            } else {
-                outputStream.write(cellValue.toString().replace(columnSeperator, "").getBytes());
+            if (cellValue != null) {
+                final String value = cellValue.toString();
+                writer.write(value.indexOf(columnSeperator) < 0 ? value : value.replace(columnSeperator, ""));
             }
         }
-        outputStream.write(lineSepeator.getBytes());
+        writer.write(lineSepeator);
     }
 
     public void exportToXLSSheet(final OutputStream outputStream) throws IOException {
@@ -270,6 +293,18 @@ public class Spreadsheet {
         new SpreadsheetXLSExporter().exportToXLSSheet(this, file);
     }
 
+    /**
+     * Writes this spreadsheet and the ones chained to it as a xlsx workbook, streaming the rows instead of building the
+     * workbook in memory.
+     */
+    public void exportToXLSXSheet(final OutputStream outputStream) throws IOException {
+        new SpreadsheetXLSExporter().exportToXLSXSheet(this, outputStream);
+    }
+
+    public void exportToXLSXSheet(final File file) throws IOException {
+        new SpreadsheetXLSExporter().exportToXLSXSheet(this, file);
+    }
+
     public void exportToXLSSheet(final HSSFWorkbook workbook, final HSSFCellStyle headerCellStyle, final HSSFCellStyle cellStyle) {
         new SpreadsheetXLSExporter().exportToXLSSheet(workbook, this, headerCellStyle, cellStyle);
     }
@@ -278,4 +313,8 @@ public class Spreadsheet {
         new SpreadsheetXLSExporter().exportToXLSSheets(outputStream, spreadsheets);
     }
 
+    public static void exportToXLSXSheets(final OutputStream outputStream, List<Spreadsheet> spreadsheets) throws IOException {
+        new SpreadsheetXLSExporter().exportToXLSXSheets(outputStream, spreadsheets);
+    }
+
 }
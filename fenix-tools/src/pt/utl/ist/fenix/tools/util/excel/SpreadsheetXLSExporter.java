@@ -6,7 +6,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFCellStyle;
@@ -14,10 +17,45 @@ import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
+import pt.utl.ist.fenix.tools.spreadsheet.LazySheetData;
+import pt.utl.ist.fenix.tools.spreadsheet.SpreadsheetBuilder;
+import pt.utl.ist.fenix.tools.spreadsheet.WorkbookExportFormat;
 import pt.utl.ist.fenix.tools.util.excel.Spreadsheet.Row;
 
+/**
+ * Exports {@link Spreadsheet}s, and the ones chained to them, as excel workbooks. The xls methods build the whole workbook in
+ * memory before writing it. The xlsx methods go through {@link SpreadsheetBuilder} and stream the rows into the file, so they
+ * should be preferred for large reports.
+ */
 public class SpreadsheetXLSExporter {
 
+    /**
+     * Lines of a legacy spreadsheet: one cell per header, or per value on rows longer than the headers. A spreadsheet without
+     * rows is written with a single empty row, since headers are taken from the first line.
+     */
+    private static class SpreadsheetSheetData extends LazySheetData<Row> {
+        private final List<Object> headers;
+
+        public SpreadsheetSheetData(final Spreadsheet spreadsheet) {
+            super(spreadsheet.getRows().isEmpty() ? Collections.singletonList(spreadsheet.new Row()) : spreadsheet.getRows());
+            this.headers = spreadsheet.getHeader();
+        }
+
+        @Override
+        protected void makeLine(final Row row) {
+            final List<Object> cells = row.getCells();
+            final int columns = Math.max(headers.size(), cells.size());
+            for (int i = 0; i < columns; i++) {
+                final Object header = i < headers.size() && headers.get(i) != null ? headers.get(i) : "";
+                if (i < cells.size()) {
+                    addCell(header, cells.get(i) != null ? cells.get(i) : "");
+                } else {
+                    addCell(header, null);
+                }
+            }
+        }
+    }
+
     public void exportToXLSSheet(final Spreadsheet spreadsheet, final OutputStream outputStream) throws IOException {
         final HSSFWorkbook workbook = new HSSFWorkbook();
         final ExcelStyle excelStyle = new ExcelStyle(workbook);
@@ -65,20 +103,58 @@ public class SpreadsheetXLSExporter {
 
     public void exportToXLSSheet(HSSFWorkbook workbook, Spreadsheet spreadsheet, HSSFCellStyle headerCellStyle,
             HSSFCellStyle cellStyle) {
+        for (Spreadsheet current = spreadsheet; current != null; current = current.getNextSpreadsheet()) {
+            final HSSFSheet sheet = workbook.createSheet(current.getName());
+            sheet.setDefaultColumnWidth((short) 20);
 
-        final HSSFSheet sheet = workbook.createSheet(spreadsheet.getName());
-        sheet.setDefaultColumnWidth((short) 20);
+            exportXLSHeaderLine(sheet, headerCellStyle, current.getHeader());
 
-        exportXLSHeaderLine(sheet, headerCellStyle, spreadsheet.getHeader());
+            for (final Row row : current.getRows()) {
+                exportXLSRowLine(sheet, cellStyle, row.getCells());
+            }
+        }
+    }
+
+    public void exportToXLSXSheet(final Spreadsheet spreadsheet, final OutputStream outputStream) throws IOException {
+        exportToXLSXSheets(outputStream, Collections.singletonList(spreadsheet));
+    }
 
-        for (final Row row : spreadsheet.getRows()) {
-            exportXLSRowLine(sheet, cellStyle, row.getCells());
+    public void exportToXLSXSheet(final Spreadsheet spreadsheet, final File file) throws IOException {
+        BufferedOutputStream outputStream = null;
+        try {
+            outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            exportToXLSXSheet(spreadsheet, outputStream);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
         }
+    }
 
-        final Spreadsheet next = spreadsheet.getNextSpreadsheet();
-        if (next != null) {
-            exportToXLSSheet(workbook, next, headerCellStyle, cellStyle);
+    /**
+     * Sheets are added to the builder by name, so, as {@link HSSFWorkbook#createSheet(String)} does, sheets whose names only
+     * differ in case are refused instead of replacing each other.
+     */
+    public void exportToXLSXSheets(final OutputStream outputStream, final List<Spreadsheet> spreadsheets) throws IOException {
+        final SpreadsheetBuilder builder = new SpreadsheetBuilder();
+        final Set<String> names = new HashSet<String>();
+        for (final Spreadsheet spreadsheet : spreadsheets) {
+            for (Spreadsheet current = spreadsheet; current != null; current = current.getNextSpreadsheet()) {
+                if (!names.add(current.getName().toUpperCase())) {
+                    throw new IllegalArgumentException("The workbook already contains a sheet named " + current.getName());
+                }
+                builder.addSheet(current.getName(), new SpreadsheetSheetData(current));
+            }
         }
+        builder.build(WorkbookExportFormat.XLSX, outputStream);
     }
 
     protected void exportXLSHeaderLine(final HSSFSheet sheet, final HSSFCellStyle cellStyle, final List<Object> cells) {
@@ -0,0 +1,244 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Decodes the files written by {@link ColumnarBuilder} with a minimal reader of the format described there.
+ */
+public class ColumnarBuilderTest extends TestCase {
+    private static final byte BOOLEAN = 1, LONG = 2, DOUBLE = 3, TIMESTAMP = 4, STRING = 5;
+
+    private static final byte PLAIN = 0, DICTIONARY = 1;
+
+    private static class Chunk {
+        byte type;
+        byte encoding;
+        int nullCount;
+        Object min;
+        Object max;
+        Object[] values;
+    }
+
+    private static class ColumnarSheet {
+        String name;
+        final List<String> columnNames = new ArrayList<String>();
+        final List<List<Chunk>> groups = new ArrayList<List<Chunk>>();
+
+        Object value(int column, int row) {
+            for (List<Chunk> group : groups) {
+                int rowCount = group.get(0).values.length;
+                if (row < rowCount) {
+                    return column < group.size() ? group.get(column).values[row] : null;
+                }
+                row -= rowCount;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        Chunk chunk(int group, int column) {
+            return groups.get(group).get(column);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static List<ColumnarSheet> read(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte[] magic = new byte[5];
+        in.readFully(magic);
+        assertEquals("FTCOL", new String(magic, "US-ASCII"));
+        assertEquals(1, in.readByte());
+        List<ColumnarSheet> sheets = new ArrayList<ColumnarSheet>();
+        byte tag;
+        while ((tag = in.readByte()) != 'E') {
+            if (tag == 'S') {
+                ColumnarSheet sheet = new ColumnarSheet();
+                sheet.name = readString(in);
+                int columnCount = in.readInt();
+                for (int i = 0; i < columnCount; i++) {
+                    sheet.columnNames.add(readString(in));
+                }
+                sheets.add(sheet);
+            } else {
+                assertEquals('G', tag);
+                int rowCount = in.readInt();
+                int columnCount = in.readInt();
+                List<Chunk> group = new ArrayList<Chunk>();
+                for (int i = 0; i < columnCount; i++) {
+                    group.add(readChunk(in, rowCount));
+                }
+                sheets.get(sheets.size() - 1).groups.add(group);
+            }
+        }
+        assertEquals(-1, in.read());
+        return sheets;
+    }
+
+    private static Chunk readChunk(DataInputStream in, int rowCount) throws IOException {
+        Chunk chunk = new Chunk();
+        chunk.type = in.readByte();
+        chunk.encoding = in.readByte();
+        chunk.nullCount = in.readInt();
+        if (chunk.nullCount < rowCount) {
+            chunk.min = readValue(in, chunk.type);
+            chunk.max = readValue(in, chunk.type);
+        }
+        byte[] deflated = new byte[in.readInt()];
+        in.readFully(deflated);
+        DataInputStream data = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(deflated)));
+        byte[] bitmap = new byte[(rowCount + 7) / 8];
+        data.readFully(bitmap);
+        List<String> dictionary = null;
+        if (chunk.encoding == DICTIONARY) {
+            dictionary = new ArrayList<String>();
+            for (int i = data.readInt(); i > 0; i--) {
+                dictionary.add(readString(data));
+            }
+        }
+        chunk.values = new Object[rowCount];
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if ((bitmap[i / 8] & (1 << (i % 8))) == 0) {
+                continue;
+            }
+            if (chunk.type == BOOLEAN) {
+                if (count % 8 == 0) {
+                    bits = data.readByte();
+                }
+                chunk.values[i] = (bits & (1 << (count++ % 8))) != 0;
+            } else if (dictionary != null) {
+                chunk.values[i] = dictionary.get(data.readInt());
+            } else {
+                chunk.values[i] = readValue(data, chunk.type);
+            }
+        }
+        assertEquals(-1, data.read());
+        return chunk;
+    }
+
+    private static Object readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+        case BOOLEAN:
+            return in.readByte() != 0;
+        case LONG:
+        case TIMESTAMP:
+            return in.readLong();
+        case DOUBLE:
+            return in.readDouble();
+        default:
+            return readString(in);
+        }
+    }
+
+    private static ColumnarSheet build(SheetData<?> sheet) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SpreadsheetBuilder().addSheet("data", sheet).build(WorkbookExportFormat.COLUMNAR, output);
+        List<ColumnarSheet> sheets = read(output.toByteArray());
+        assertEquals(1, sheets.size());
+        assertEquals("data", sheets.get(0).name);
+        return sheets.get(0);
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> items = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    public void testTypesAndNulls() throws IOException {
+        final int rows = 40;
+        ColumnarSheet sheet = build(new SheetData<Integer>(range(rows)) {
+            @Override
+            protected void makeLine(Integer i) {
+                addCell("id", i);
+                addCell("number", i % 2 == 0 ? (Object) i : (Object) (i + 0.5));
+                addCell("grade", i % 3 == 0 ? null : i / 4.0);
+                addCell("ok", i % 5 == 0 ? null : i % 2 == 0);
+                addCell("city", i % 4 == 0 ? null : "city " + i % 3);
+                addCell("unique", "u" + i);
+                addCell("mixed", i % 2 == 0 ? (Object) ("m" + i) : (Object) i);
+            }
+        });
+        assertEquals(Arrays.asList("id", "number", "grade", "ok", "city", "unique", "mixed"), sheet.columnNames);
+        assertEquals(1, sheet.groups.size());
+
+        assertEquals(LONG, sheet.chunk(0, 0).type);
+        assertEquals(0L, sheet.chunk(0, 0).min);
+        assertEquals((long) rows - 1, sheet.chunk(0, 0).max);
+        assertEquals("longs and doubles are widened to doubles", DOUBLE, sheet.chunk(0, 1).type);
+        assertEquals(DOUBLE, sheet.chunk(0, 2).type);
+        assertEquals((rows + 2) / 3, sheet.chunk(0, 2).nullCount);
+        assertEquals(BOOLEAN, sheet.chunk(0, 3).type);
+        assertEquals(STRING, sheet.chunk(0, 4).type);
+        assertEquals("few distinct strings", DICTIONARY, sheet.chunk(0, 4).encoding);
+        assertEquals(STRING, sheet.chunk(0, 5).type);
+        assertEquals("too many distinct strings for a dictionary", PLAIN, sheet.chunk(0, 5).encoding);
+        assertEquals(STRING, sheet.chunk(0, 6).type);
+
+        for (int i = 0; i < rows; i++) {
+            assertEquals((long) i, sheet.value(0, i));
+            assertEquals(i % 2 == 0 ? (double) i : i + 0.5, sheet.value(1, i));
+            assertEquals(i % 3 == 0 ? null : i / 4.0, sheet.value(2, i));
+            assertEquals(i % 5 == 0 ? null : i % 2 == 0, sheet.value(3, i));
+            assertEquals(i % 4 == 0 ? null : "city " + i % 3, sheet.value(4, i));
+            assertEquals("u" + i, sheet.value(5, i));
+            assertEquals(i % 2 == 0 ? "m" + i : Integer.toString(i), sheet.value(6, i));
+        }
+    }
+
+    public void testMultipleRowGroups() throws IOException {
+        final int rows = ColumnarBuilder.ROW_GROUP_SIZE + 100;
+        ColumnarSheet sheet = build(new LazySheetData<Integer>(range(rows)) {
+            @Override
+            protected void makeLine(Integer i) {
+                addCell("id", i);
+                addCell("even", i % 2 == 0 ? i : null);
+                addCell("parity", i % 2 == 0 ? "even" : "odd");
+            }
+        });
+        assertEquals(2, sheet.groups.size());
+        assertEquals(ColumnarBuilder.ROW_GROUP_SIZE, sheet.chunk(0, 0).values.length);
+        assertEquals(100, sheet.chunk(1, 0).values.length);
+        assertEquals((long) ColumnarBuilder.ROW_GROUP_SIZE, sheet.chunk(1, 0).min);
+        assertEquals(50, sheet.chunk(1, 1).nullCount);
+        assertEquals(DICTIONARY, sheet.chunk(1, 2).encoding);
+        for (int i = 0; i < rows; i += 997) {
+            assertEquals((long) i, sheet.value(0, i));
+            assertEquals(i % 2 == 0 ? (Object) (long) i : null, sheet.value(1, i));
+            assertEquals(i % 2 == 0 ? "even" : "odd", sheet.value(2, i));
+        }
+        assertEquals((long) rows - 1, sheet.value(0, rows - 1));
+    }
+
+    public void testNaNIsLeftOutOfStatistics() throws IOException {
+        final double[] values = { 2.5, Double.NaN, -1.0, 7.0 };
+        ColumnarSheet sheet = build(new SheetData<Integer>(range(values.length)) {
+            @Override
+            protected void makeLine(Integer i) {
+                addCell("value", values[i]);
+                addCell("nan", Double.NaN);
+            }
+        });
+        assertEquals(-1.0, sheet.chunk(0, 0).min);
+        assertEquals(7.0, sheet.chunk(0, 0).max);
+        assertTrue(Double.isNaN((Double) sheet.value(0, 1)));
+        assertTrue(Double.isNaN((Double) sheet.chunk(0, 1).min));
+        assertTrue(Double.isNaN((Double) sheet.chunk(0, 1).max));
+    }
+}
@@ -0,0 +1,74 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.math.BigDecimal;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Compares the converter lookup of every cell in the builder's converter map, as it used to be done, with the class and per
+ * column caches of {@link AbstractSheetBuilder}, over a wide sheet of mixed types.
+ * Run with: java pt.utl.ist.fenix.tools.spreadsheet.ConverterDispatchBenchmark [columns] [rows]
+ */
+public class ConverterDispatchBenchmark {
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) {
+        int columns = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        Object[][] values = new Object[rows][columns];
+        DateTime now = new DateTime();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                switch (column % 5) {
+                case 0:
+                    values[row][column] = Integer.valueOf(row);
+                    break;
+                case 1:
+                    values[row][column] = "value " + row;
+                    break;
+                case 2:
+                    values[row][column] = new BigDecimal(row).movePointLeft(2);
+                    break;
+                case 3:
+                    values[row][column] = now.plusMinutes(row);
+                    break;
+                default:
+                    values[row][column] = new LocalDate(2000, 1, 1).plusDays(row % 1000);
+                }
+            }
+        }
+        ExcelBuilder builder = new ExcelBuilder();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            int checksum = 0;
+            for (Object[] line : values) {
+                for (Object value : line) {
+                    Object content = value;
+                    if (builder.converters.containsKey(value.getClass())) {
+                        content = builder.converters.get(value.getClass()).convert(value);
+                    }
+                    checksum += content.hashCode();
+                }
+            }
+            long perCell = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Object[] line : values) {
+                for (Object value : line) {
+                    checksum -= builder.convert(value).hashCode();
+                }
+            }
+            long perClass = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Object[] line : values) {
+                for (int column = 0; column < line.length; column++) {
+                    checksum += builder.convert(column, line[column]).hashCode();
+                }
+            }
+            long perColumn = System.nanoTime() - start;
+            double cells = rows * columns;
+            System.out.printf("%d cells: map lookup %.1f ns/cell, class cache %.1f ns/cell, column cache %.1f ns/cell (%d)%n",
+                    rows * columns, perCell / cells, perClass / cells, perColumn / cells, checksum);
+        }
+    }
+}
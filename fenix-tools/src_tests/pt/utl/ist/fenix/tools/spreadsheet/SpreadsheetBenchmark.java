@@ -0,0 +1,191 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks {@link SpreadsheetBuilder} over {@link SyntheticSheets}, for every combination of format, row count, sheet
+ * width and styling. For each case it prints, tab separated: the case, rows per second, output bytes, bytes allocated by the
+ * building thread and the peak heap. The output can be saved and passed back as a baseline, in which case cases whose
+ * throughput dropped by more than the tolerance are reported and the run exits with status 1.
+ *
+ * Arguments, all optional, as name=value:
+ * <ul>
+ * <li>formats: comma separated {@link WorkbookExportFormat}s, EXCEL,DOCX,XLSX,CSV,TSV by default</li>
+ * <li>rows: comma separated row counts, 1000,100000,1000000 by default</li>
+ * <li>shapes: narrow and/or wide, both by default</li>
+ * <li>styled: false, true or both, both by default</li>
+ * <li>iterations: measured runs per case after one warm up run, the best is kept, 3 by default</li>
+ * <li>baseline: file with a previous output to compare with</li>
+ * <li>tolerance: allowed throughput drop against the baseline, 0.2 by default</li>
+ * </ul>
+ *
+ * EXCEL cases above 65535 rows are skipped, since that is the limit of the format. Cases that run out of memory, as the in
+ * memory builders do on the largest sheets, are reported as such. Run with a fixed heap, such as -Xmx2g, for comparable
+ * peaks. Allocation is measured through the com.sun.management extension of the thread bean, and reported as -1 where it is
+ * not available.
+ */
+public class SpreadsheetBenchmark {
+    private static final int EXCEL_MAX_ROWS = 65535;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static class Result {
+        private final double rowsPerSecond;
+
+        private final long bytes;
+
+        private final long allocated;
+
+        private final long peakHeap;
+
+        private Result(double rowsPerSecond, long bytes, long allocated, long peakHeap) {
+            this.rowsPerSecond = rowsPerSecond;
+            this.bytes = bytes;
+            this.allocated = allocated;
+            this.peakHeap = peakHeap;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        String[] formats = option(options, "formats", "EXCEL,DOCX,XLSX,CSV,TSV").split(",");
+        String[] rows = option(options, "rows", "1000,100000,1000000").split(",");
+        String[] shapes = option(options, "shapes", "narrow,wide").split(",");
+        String styled = option(options, "styled", "both");
+        int iterations = Integer.parseInt(option(options, "iterations", "3"));
+        double tolerance = Double.parseDouble(option(options, "tolerance", "0.2"));
+        Map<String, Double> baseline =
+                options.containsKey("baseline") ? readBaseline(new File(options.get("baseline"))) : new HashMap<String, Double>();
+
+        List<String> regressions = new ArrayList<String>();
+        System.out.println("case\trows/s\tbytes\tallocated\tpeak heap");
+        for (String formatName : formats) {
+            WorkbookExportFormat format = WorkbookExportFormat.valueOf(formatName.trim());
+            for (String rowCount : rows) {
+                int size = Integer.parseInt(rowCount.trim());
+                for (String shape : shapes) {
+                    int columns = shape.trim().equals("wide") ? SyntheticSheets.WIDE : SyntheticSheets.NARROW;
+                    for (boolean style : new boolean[] { false, true }) {
+                        if (!styled.equals("both") && Boolean.parseBoolean(styled) != style) {
+                            continue;
+                        }
+                        String name = format + "/" + size + "/" + shape.trim() + "/" + (style ? "styled" : "plain");
+                        if (format == WorkbookExportFormat.EXCEL && size > EXCEL_MAX_ROWS) {
+                            System.out.println(name + "\tskipped");
+                            continue;
+                        }
+                        Result best = null;
+                        try {
+                            run(format, size, columns, style);
+                            for (int i = 0; i < iterations; i++) {
+                                Result result = run(format, size, columns, style);
+                                if (best == null || result.rowsPerSecond > best.rowsPerSecond) {
+                                    best = result;
+                                }
+                            }
+                        } catch (OutOfMemoryError e) {
+                            System.out.println(name + "\tout of memory");
+                            continue;
+                        }
+                        System.out.printf("%s\t%.0f\t%d\t%d\t%d%n", name, best.rowsPerSecond, best.bytes, best.allocated,
+                                best.peakHeap);
+                        Double previous = baseline.get(name);
+                        if (previous != null && best.rowsPerSecond < previous * (1 - tolerance)) {
+                            regressions.add(String.format("%s: %.0f rows/s, was %.0f", name, best.rowsPerSecond, previous));
+                        }
+                    }
+                }
+            }
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println("Regressions:");
+            for (String regression : regressions) {
+                System.out.println(regression);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.containsKey(name) ? options.get(name) : defaultValue;
+    }
+
+    private static Map<String, Double> readBaseline(File file) throws IOException {
+        Map<String, Double> baseline = new HashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 5 && !fields[0].equals("case")) {
+                    baseline.put(fields[0], Double.valueOf(fields[1]));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return baseline;
+    }
+
+    private static Result run(WorkbookExportFormat format, int rows, int columns, boolean styled) throws IOException {
+        System.gc();
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                pools.add(pool);
+            }
+        }
+        long allocatedBefore = allocatedBytes();
+        CountingOutputStream output = new CountingOutputStream();
+        long start = System.nanoTime();
+        SpreadsheetBuilder builder = SyntheticSheets.builder(format, styled);
+        builder.addSheet("data", SyntheticSheets.create(rows, columns));
+        builder.build(format, output);
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        return new Result(rows / (elapsed / 1e9), output.count, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore,
+                peakHeap);
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,127 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public class SpreadsheetBuilderTest extends TestCase {
+    private static final int ROWS = 500;
+
+    private byte[] build(SpreadsheetBuilder builder, WorkbookExportFormat format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.build(format, output);
+        return output.toByteArray();
+    }
+
+    private byte[] build(WorkbookExportFormat format, SheetData<?> sheet) throws IOException {
+        return build(new SpreadsheetBuilder().addSheet("data", sheet), format);
+    }
+
+    private SheetData<String> quotedSheet(boolean lazy) {
+        List<String> items = Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", "");
+        if (lazy) {
+            return new LazySheetData<String>(items) {
+                @Override
+                protected void makeLine(String item) {
+                    addCell("value", item);
+                    addCell("length", item.length());
+                }
+            };
+        }
+        return new SheetData<String>(items) {
+            @Override
+            protected void makeLine(String item) {
+                addCell("value", item);
+                addCell("length", item.length());
+            }
+        };
+    }
+
+    public void testCsvRoundTrip() throws IOException {
+        byte[] csv = build(WorkbookExportFormat.CSV, quotedSheet(false));
+        CsvReader reader = new CsvReader(new InputStreamReader(new ByteArrayInputStream(csv), "UTF-8"), ',');
+        assertEquals(Arrays.asList("value", "length"), reader.getHeader());
+        for (String expected : Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", "")) {
+            CsvReader.Row row = reader.next();
+            assertEquals(expected, row.get("value"));
+            assertEquals(Integer.toString(expected.length()), row.get(1));
+        }
+        assertNull(reader.next());
+    }
+
+    public void testLazySheetWritesTheSameAsEager() throws IOException {
+        for (WorkbookExportFormat format : new WorkbookExportFormat[] { WorkbookExportFormat.CSV, WorkbookExportFormat.TSV,
+                WorkbookExportFormat.COLUMNAR }) {
+            assertTrue(format.toString(),
+                    Arrays.equals(build(format, quotedSheet(false)), build(format, quotedSheet(true))));
+        }
+    }
+
+    public void testLazySheetIsReadOnce() throws IOException {
+        SheetData<String> sheet = quotedSheet(true);
+        build(WorkbookExportFormat.CSV, sheet);
+        try {
+            build(WorkbookExportFormat.CSV, sheet);
+            fail("a lazy sheet can only be written once");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private void assertWorkbook(Workbook book, int rows, int columns) {
+        Sheet sheet = book.getSheetAt(0);
+        assertEquals("id", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("column 1", sheet.getRow(0).getCell(1).getStringCellValue());
+        for (int row = 0; row < rows; row += 97) {
+            assertEquals((double) row, sheet.getRow(row + 1).getCell(0).getNumericCellValue());
+            assertEquals(SyntheticSheets.value(row, 2), sheet.getRow(row + 1).getCell(2).getStringCellValue());
+        }
+        assertEquals("total", sheet.getRow(rows + 1).getCell(0).getStringCellValue());
+        assertEquals(columns, sheet.getRow(1).getLastCellNum());
+    }
+
+    public void testExcel() throws IOException {
+        byte[] bytes = build(SyntheticSheets.builder(WorkbookExportFormat.EXCEL, true).addSheet("data",
+                SyntheticSheets.create(ROWS, SyntheticSheets.NARROW)), WorkbookExportFormat.EXCEL);
+        assertWorkbook(new HSSFWorkbook(new ByteArrayInputStream(bytes)), ROWS, SyntheticSheets.NARROW);
+    }
+
+    public void testXlsxAndDocx() throws IOException {
+        for (WorkbookExportFormat format : new WorkbookExportFormat[] { WorkbookExportFormat.XLSX, WorkbookExportFormat.DOCX }) {
+            byte[] bytes = build(SyntheticSheets.builder(format, true).addSheet("data",
+                    SyntheticSheets.create(ROWS, SyntheticSheets.NARROW)), format);
+            assertWorkbook(new XSSFWorkbook(new ByteArrayInputStream(bytes)), ROWS, SyntheticSheets.NARROW);
+        }
+    }
+
+    public void testSheetsKeepTheirOrder() throws IOException {
+        SpreadsheetBuilder builder = new SpreadsheetBuilder();
+        List<String> names = Arrays.asList("zeta", "alpha", "mu", "beta", "omega");
+        for (String name : names) {
+            builder.addSheet(name, SyntheticSheets.create(10, SyntheticSheets.NARROW));
+        }
+        HSSFWorkbook book = new HSSFWorkbook(new ByteArrayInputStream(build(builder, WorkbookExportFormat.EXCEL)));
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals(names.get(i), book.getSheetName(i));
+        }
+    }
+
+    public void testParallelBuildWritesTheSameAsSerial() throws IOException {
+        SpreadsheetBuilder serial = new SpreadsheetBuilder();
+        SpreadsheetBuilder parallel = new SpreadsheetBuilder().setParallelism(4);
+        for (int i = 0; i < 12; i++) {
+            serial.addSheet("sheet " + i, SyntheticSheets.create(ROWS + i, SyntheticSheets.NARROW));
+            parallel.addSheet("sheet " + i, SyntheticSheets.create(ROWS + i, SyntheticSheets.NARROW));
+        }
+        assertTrue(Arrays.equals(build(serial, WorkbookExportFormat.CSV), build(parallel, WorkbookExportFormat.CSV)));
+    }
+}
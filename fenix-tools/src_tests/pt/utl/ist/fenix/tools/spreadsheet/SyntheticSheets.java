@@ -0,0 +1,134 @@
+package pt.utl.ist.fenix.tools.spreadsheet;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import pt.utl.ist.fenix.tools.spreadsheet.styles.CellDateFormat;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.CellFillForegroundColor;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.CellFillPattern;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.ComposedCellStyle;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.FontWeight;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XCellDateFormat;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XCellFillForegroundColor;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XCellFillPattern;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XComposedCellStyle;
+import pt.utl.ist.fenix.tools.spreadsheet.styles.xssf.XFontWeight;
+
+/**
+ * Synthetic, deterministic sheets for benchmarks and tests. Rows are generated from their index as the sheet is written, so
+ * large sheets don't need their items in memory. Columns cycle through the common cell types: integers, repeated and unique
+ * strings, decimals, dates, date times, booleans and doubles.
+ */
+public class SyntheticSheets {
+    public static final int NARROW = 8;
+
+    public static final int WIDE = 64;
+
+    private static final String[] WORDS = { "Lisboa", "Porto", "Coimbra", "Braga", "Faro", "Viseu", "Aveiro", "Leiria" };
+
+    private static final LocalDate START_DATE = new LocalDate(2000, 1, 1);
+
+    private static final DateTime START_TIME = new DateTime(2000, 1, 1, 0, 0, 0, 0);
+
+    public static Iterable<Integer> range(final int size) {
+        return new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next == size) {
+                            throw new NoSuchElementException();
+                        }
+                        return next++;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    public static Object value(int row, int column) {
+        switch (column % 8) {
+        case 0:
+            return row;
+        case 1:
+            return WORDS[(row + column) % WORDS.length];
+        case 2:
+            return "item " + row + "." + column;
+        case 3:
+            return BigDecimal.valueOf(row * 31L + column, 2);
+        case 4:
+            return START_DATE.plusDays((row + column) % 3650);
+        case 5:
+            return START_TIME.plusMinutes(row + column);
+        case 6:
+            return (row + column) % 3 == 0;
+        default:
+            return (row * 0.25) + column;
+        }
+    }
+
+    /**
+     * A lazy sheet of the given size, with a header per column and a total in the footer of the first column.
+     */
+    public static SheetData<Integer> create(int rows, final int columns) {
+        return new LazySheetData<Integer>(range(rows)) {
+            @Override
+            protected void makeLine(Integer row) {
+                addCell("id", row, "total");
+                for (int column = 1; column < columns; column++) {
+                    addCell("column " + column, value(row, column));
+                }
+            }
+        };
+    }
+
+    /**
+     * A builder for the given format, with alternating row styles and a bold date style when styled.
+     */
+    public static SpreadsheetBuilder builder(WorkbookExportFormat format, boolean styled) {
+        SpreadsheetBuilder builder = new SpreadsheetBuilder();
+        if (styled) {
+            if (format == WorkbookExportFormat.EXCEL) {
+                ComposedCellStyle highlighted = new ComposedCellStyle();
+                highlighted.merge(new CellFillPattern(HSSFCellStyle.SOLID_FOREGROUND));
+                highlighted.merge(new CellFillForegroundColor(new HSSFColor.LIGHT_YELLOW()));
+                builder.setRowStyle(highlighted, new CellFillForegroundColor(new HSSFColor.WHITE()));
+                ComposedCellStyle date = new ComposedCellStyle();
+                date.merge(new CellDateFormat("dd/MM/yyyy"));
+                date.merge(new FontWeight(HSSFFont.BOLDWEIGHT_BOLD));
+                builder.addTypeStyle(LocalDate.class, date);
+            } else if (format == WorkbookExportFormat.DOCX || format == WorkbookExportFormat.XLSX) {
+                XComposedCellStyle highlighted = new XComposedCellStyle();
+                highlighted.merge(new XCellFillPattern(HSSFCellStyle.SOLID_FOREGROUND));
+                highlighted.merge(new XCellFillForegroundColor(IndexedColors.LIGHT_YELLOW));
+                builder.setRowStyle(highlighted, new XCellFillForegroundColor(IndexedColors.WHITE));
+                XComposedCellStyle date = new XComposedCellStyle();
+                date.merge(new XCellDateFormat("dd/MM/yyyy"));
+                date.merge(new XFontWeight(HSSFFont.BOLDWEIGHT_BOLD));
+                builder.addTypeStyle(LocalDate.class, date);
+            }
+        }
+        return builder;
+    }
+}